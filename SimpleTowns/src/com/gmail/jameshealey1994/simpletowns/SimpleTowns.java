@@ -7,16 +7,30 @@ import com.gmail.jameshealey1994.simpletowns.commands.command.HelpCommand;
 import com.gmail.jameshealey1994.simpletowns.commands.command.STCommand;
 import com.gmail.jameshealey1994.simpletowns.hooks.DynmapHook;
 import com.gmail.jameshealey1994.simpletowns.hooks.WorldGuardHook;
+import com.gmail.jameshealey1994.simpletowns.listeners.PlayerCacheListener;
 import com.gmail.jameshealey1994.simpletowns.listeners.STListener;
+import com.gmail.jameshealey1994.simpletowns.listeners.WorldListener;
 import com.gmail.jameshealey1994.simpletowns.localisation.Localisable;
 import com.gmail.jameshealey1994.simpletowns.localisation.Localisation;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
-import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import com.gmail.jameshealey1994.simpletowns.storage.ShardedTownStore;
+import com.gmail.jameshealey1994.simpletowns.storage.SqlTownStore;
+import com.gmail.jameshealey1994.simpletowns.storage.TownStore;
+import com.gmail.jameshealey1994.simpletowns.storage.YamlTownStore;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunkIndex;
+import com.gmail.jameshealey1994.simpletowns.utils.ConfigSaver;
+import com.gmail.jameshealey1994.simpletowns.utils.HookSync;
+import com.gmail.jameshealey1994.simpletowns.utils.MembershipIndex;
+import com.gmail.jameshealey1994.simpletowns.utils.PlayerCache;
+import com.gmail.jameshealey1994.simpletowns.utils.TownJournal;
 import com.gmail.jameshealey1994.simpletowns.utils.TownUtils;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import org.bukkit.Chunk;
+import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -43,6 +57,41 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
      */
     private Map<String, Town> towns = new HashMap<>();
 
+    /**
+     * Index of the Towns owning each claimed chunk.
+     */
+    private final ChunkIndex chunkIndex = new ChunkIndex();
+
+    /**
+     * Index of the Towns each player is a member of.
+     */
+    private final MembershipIndex membershipIndex = new MembershipIndex();
+
+    /**
+     * Saves the config in the background.
+     */
+    private final ConfigSaver configSaver = new ConfigSaver(this);
+
+    /**
+     * Cache of the names of the players.
+     */
+    private final PlayerCache playerCache = new PlayerCache(this);
+
+    /**
+     * The path to the town storage value in the config.
+     */
+    public static final String PATH_STORAGE = "Storage";
+
+    /**
+     * Storage of the towns.
+     */
+    private TownStore townStore;
+
+    /**
+     * Synchronisation of the changed towns in the hooks.
+     */
+    private final HookSync hookSync = new HookSync(this);
+
     /**
      * Our Dynmap hook class.
      */
@@ -72,10 +121,23 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
         // Create our WorldGuard hook
         worldguard.onEnable();
 
-        // Load towns from config
-        this.towns = new TownUtils(this).getTownsFromConfig();
+        // Load the names of the players
+        playerCache.open();
+
+        // Give the worlds their ids, before towns and regions, so renamed worlds are recognised
+        WorldRegistry.load(this);
+        for (World world : getServer().getWorlds()) {
+            WorldRegistry.register(world);
+        }
+        worldguard.loadRegionRegistry();
+
+        // Load towns from their storage
+        openTownStore();
+        setTowns(new TownUtils(this).getTownsFromStore());
 
         // Register events
+        getServer().getPluginManager().registerEvents(new WorldListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerCacheListener(this), this);
         if (!worldguard.LAND_PROTECTION_BY_WORLDGUARD)
             getServer().getPluginManager().registerEvents(new STListener(this), this);
 
@@ -85,11 +147,20 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
 
     @Override
     public void onDisable() {
+        // Stop synchronising towns in the hooks, regions are reconciled or rebuilt on enable
+        hookSync.cancel();
+
+        // Write changes not saved yet
+        this.townStore.close();
+        this.configSaver.flush();
+        this.playerCache.close();
+        WorldRegistry.save(this);
+
         // Delete our Dynmap markerset (Like Dynmap-WorldGuard plugin)
         this.dynmap.deleteMarkerset();
 
-        // Delete all WorldGuard regions that we created
-        this.worldguard.clearWorldGuard();
+        // Keep or delete the WorldGuard regions that we created, depending on the region sync
+        this.worldguard.onDisable();
     }
 
     /**
@@ -139,12 +210,101 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
     }
 
     /**
-     * Sets the Towns in the server.
+     * Sets the Towns in the server, and rebuilds the chunk index and the
+     * membership index from them.
      *
      * @param towns     the new Towns in the server
      */
     public void setTowns(Map<String, Town> towns) {
         this.towns = towns;
+        this.chunkIndex.rebuild(towns.values());
+        this.membershipIndex.rebuild(towns.values());
+    }
+
+    /**
+     * Returns the index of the Towns owning each claimed chunk.
+     * Has to be updated when a Town claims or unclaims a chunk.
+     *
+     * @return      the index of the Towns owning each claimed chunk
+     */
+    public ChunkIndex getChunkIndex() {
+        return chunkIndex;
+    }
+
+    /**
+     * Returns the index of the Towns each player is a member of.
+     * Has to be updated when members are added, removed, promoted or
+     * demoted, and when a Town is created or deleted.
+     *
+     * @return      the index of the Towns each player is a member of
+     */
+    public MembershipIndex getMembershipIndex() {
+        return membershipIndex;
+    }
+
+    /**
+     * Returns the saver of the config.
+     * Commands changing the config mark it dirty instead of saving it.
+     *
+     * @return      the saver of the config
+     */
+    public ConfigSaver getConfigSaver() {
+        return configSaver;
+    }
+
+    /**
+     * Returns the cache of the names of the players.
+     * Commands look players up through it, instead of asking the server.
+     *
+     * @return      the cache of the names of the players
+     */
+    public PlayerCache getPlayerCache() {
+        return playerCache;
+    }
+
+    /**
+     * Returns the storage of the towns.
+     * Commands changing towns record the changes through it.
+     *
+     * @return      the storage of the towns
+     */
+    public TownStore getTownStore() {
+        return townStore;
+    }
+
+    /**
+     * Opens the storage of the towns set in the config, the config itself by
+     * default, one file per town, or an SQLite database.
+     * Falls back to the config if the storage can't be opened.
+     * Warns if the journal is enabled with another storage, which ignores it.
+     */
+    public void openTownStore() {
+        final String storage = getConfig().getString(PATH_STORAGE, "YAML");
+        if ("SQLite".equalsIgnoreCase(storage)) {
+            townStore = new SqlTownStore(this);
+        } else if ("Shards".equalsIgnoreCase(storage)) {
+            townStore = new ShardedTownStore(this);
+        } else {
+            townStore = new YamlTownStore(this);
+        }
+        if (!townStore.open()) {
+            getLogger().log(Level.SEVERE, "Storing towns in the config instead");
+            townStore = new YamlTownStore(this);
+            townStore.open();
+        }
+        if (!(townStore instanceof YamlTownStore) && getConfig().getBoolean(TownJournal.CONFIG_STRING + ".Enabled", TownJournal.DEFAULT_ENABLED)) {
+            getLogger().log(Level.WARNING, "The journal only applies to towns stored in the config, it is ignored with storage {0}", storage);
+        }
+    }
+
+    /**
+     * Starts adding towns to our Dynmap markerset and to WorldGuard regions,
+     * on the next ticks. Changes of the towns loaded before are dropped.
+     *
+     * @param towns     towns to register
+     */
+    public void registerTowns(Collection<Town> towns) {
+        hookSync.registerTowns(towns);
     }
 
     /**
@@ -168,14 +328,21 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
      *                  town is found
      */
     public Town getTown(Chunk chunk) {
-        for (Town t : towns.values()) {
-            for (TownChunk tc : t.getTownChunks()) {
-                if (tc.equalsChunk(chunk)) {
-                    return t;
-                }
-            }
-        }
-        return null;
+        return chunkIndex.get(WorldRegistry.getId(chunk.getWorld()), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Returns Town that owns the chunk with the passed coordinates.
+     * If a town is not found, null is returned.
+     *
+     * @param worldname     name of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              town that owns the chunk, or null, if no such
+     *                      town is found
+     */
+    public Town getTown(String worldname, int chunkX, int chunkZ) {
+        return chunkIndex.get(worldname, chunkX, chunkZ);
     }
 
     /**
@@ -187,6 +354,15 @@ public class SimpleTowns extends JavaPlugin implements Localisable {
         return this.dynmap;
     }
 
+    /**
+     * Returns the synchronisation of the changed towns in the hooks.
+     *
+     * @return      HookSync
+     */
+    public HookSync getHookSync() {
+        return this.hookSync;
+    }
+
     /**
      * Returns our WorldGuard hook class.
      *
@@ -25,10 +25,12 @@ public class DefaultSTCommandEnvironment extends STCommandEnvironment {
             new RenameCommand(),
             new ListCommand(),
             new InfoCommand(),
+            new MineCommand(),
             new ChunksCommand(),
             new DeleteCommand(),
             new HelpCommand(),
             new ReloadCommand(),
+            new RepairCommand(),
             new LogCommand(),
             new DebugCommand()
         });
@@ -8,8 +8,6 @@ import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
 import com.gmail.jameshealey1994.simpletowns.utils.NameValidityChecker;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.List;
 import java.util.UUID;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
@@ -104,7 +102,7 @@ public class AddCommand extends STCommand {
         final String fullPlayerName = getFullName(plugin.getServer(), playername);
 
         // Validate playername UUID
-        UUID playerUUID = PlayernameUUID.getPlayerUUID( fullPlayerName );
+        UUID playerUUID = plugin.getPlayerCache().getUUID( fullPlayerName );
         if (playerUUID == null) {
             sender.sendMessage(localisation.get(LocalisationEntry.ERR_CANNOT_FIND_PLAYER_UUID, fullPlayerName));
             return true;
@@ -127,22 +125,17 @@ public class AddCommand extends STCommand {
 
         // Add citizen to town locally
         town.getCitizens().add(playerUUID);
+        plugin.getMembershipIndex().put(playerUUID, town, false);
 
-        // Add citizen to town in config
-        final String path = "Towns." + town.getName() + ".Citizens";
-        final List<String> citizens = plugin.getConfig().getStringList(path);
-        citizens.add(playerUUID.toString());
-        plugin.getConfig().set(path, citizens);
+        // Add citizen to stored town
+        plugin.getTownStore().addCitizen(town.getName(), playerUUID);
 
-        // Add citizen to WorldGuard regions
-        plugin.getWorldGuardHook().addMemberToRegions(town, playerUUID);
+        // Add citizen to WorldGuard regions, next tick
+        plugin.getHookSync().membersChanged(town);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_CITIZEN_ADDED, town.getName(), sender.getName(), fullPlayerName));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_CITIZEN_ADDED, town.getName(), fullPlayerName));
 
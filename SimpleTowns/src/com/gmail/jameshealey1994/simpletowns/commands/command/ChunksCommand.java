@@ -59,7 +59,7 @@ public class ChunksCommand extends STCommand {
         // Display chunk information
         // TODO paginate - see ChatPaginator bukkit utility class
         sender.sendMessage(localisation.get(LocalisationEntry.INFO_HEADER, town.getName()));
-        sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CHUNKS, town.getTownChunks().size()));
+        sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CHUNKS, town.getChunkCount()));
         for (TownChunk tc : town.getTownChunks()) {
             sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CHUNKS_ENTRY, tc.getWorldname(), tc.getX(), tc.getZ()));
         }
@@ -8,7 +8,6 @@ import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
-import java.util.List;
 import org.bukkit.Chunk;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -82,28 +81,17 @@ public class ClaimCommand extends STCommand {
         final String worldname = chunk.getWorld().getName();
         final TownChunk townchunk = new TownChunk(chunk);
 
-        final String path = "Towns.";
-
         // Add chunk to town
-        final String chunkString = chunkX + "," + chunkZ;
-        final List<String> chunks = plugin.getConfig().getStringList(path + town.getName() + ".Chunks." + worldname);
-        chunks.add(chunkString);
-        plugin.getConfig().set(path + town.getName() + ".Chunks." + worldname, chunks);
-        town.getTownChunks().add(townchunk);
-
-        // Add chunk to our Dynmap markerset and to WorldGuard regions
-        plugin.getDynmapHook().removeTownFromMarkerset(town);
-        plugin.getWorldGuardHook().removeTownRegions(town);
-        town.getChunksToAreas().update();
-        plugin.getWorldGuardHook().addTownRegions(town);
-        plugin.getDynmapHook().addTownToMarkerset(town);
+        plugin.getTownStore().claimChunk(town.getName(), townchunk);
+        town.addChunk(townchunk);
+        plugin.getChunkIndex().put(townchunk, town);
+
+        // Add chunk to the areas, our Dynmap markerset and WorldGuard regions are updated next tick
+        plugin.getHookSync().claimChunk(town, townchunk);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_CHUNK_CLAIMED, town.getName(), sender.getName(), worldname, chunkX, chunkZ));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_CHUNK_CLAIMED, town.getName()));
         return true;
@@ -10,8 +10,6 @@ import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
 import com.gmail.jameshealey1994.simpletowns.utils.NameValidityChecker;
 import com.gmail.jameshealey1994.simpletowns.utils.TownUtils;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.Arrays;
 import java.util.UUID;
 import org.bukkit.Chunk;
 import org.bukkit.command.CommandSender;
@@ -85,7 +83,7 @@ public class CreateCommand extends STCommand {
         }
 
         // Validate leader UUID
-        UUID leaderUUID = PlayernameUUID.getPlayerUUID( leadername );
+        UUID leaderUUID = plugin.getPlayerCache().getUUID( leadername );
         if (leaderUUID == null) {
             sender.sendMessage(localisation.get(LocalisationEntry.ERR_CANNOT_FIND_PLAYER_UUID, leadername));
             return true;
@@ -121,9 +119,8 @@ public class CreateCommand extends STCommand {
         final String worldname = chunk.getWorld().getName();
         final TownChunk townchunk = new TownChunk(chunk);
 
-        // Create town
-        final String path = "Towns.";
-        plugin.getConfig().set(path + townname + ".Leaders", Arrays.asList(leaderUUID.toString()));
+        // Create town, with its first chunk
+        plugin.getTownStore().createTown(townname, leaderUUID, townchunk);
 
         // Log to file
         final Logger logger = new Logger(plugin);
@@ -131,20 +128,18 @@ public class CreateCommand extends STCommand {
         logger.log(localisation.get(LocalisationEntry.LOG_TOWN_LEADER_ADDED, townname, leadername, player.getName()));
 
         // Add first chunk to town
-        plugin.getConfig().set(path + townname + ".Chunks." + worldname, Arrays.asList(chunkX + "," + chunkZ));
-        plugin.getTowns().put(townname.toLowerCase(), new Town(townname, leaderUUID, townchunk));
+        final Town newTown = new Town(townname, leaderUUID, townchunk);
+        plugin.getTowns().put(townname.toLowerCase(), newTown);
+        plugin.getChunkIndex().put(townchunk, newTown);
+        plugin.getMembershipIndex().addTown(newTown);
 
-        // Add the first chunk to our Dynmap markerset and to WorldGuard regions
-        plugin.getTown(townname).getChunksToAreas().update();
-        plugin.getWorldGuardHook().addTownRegions(plugin.getTown(townname));
-        plugin.getDynmapHook().addTownToMarkerset(plugin.getTown(townname));
+        // Add the first chunk to the areas, our Dynmap markerset and WorldGuard regions are updated next tick
+        newTown.getChunksToAreas().activateWorld(townchunk.getWorldId()); // The player is in this world, so it is loaded
+        plugin.getHookSync().createTown(newTown);
 
         // Log to file
         logger.log(localisation.get(LocalisationEntry.LOG_CHUNK_CLAIMED, townname, player.getName(), worldname, chunkX, chunkZ));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_TOWN_CREATED, townname));
 
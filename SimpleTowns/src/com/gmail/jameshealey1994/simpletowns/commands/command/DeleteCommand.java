@@ -65,22 +65,19 @@ public class DeleteCommand extends STCommand {
         }
 
         // Remove chunks from our Dynmap markerset and from WorldGuard regions
-        plugin.getDynmapHook().removeTownFromMarkerset(town);
-        plugin.getWorldGuardHook().removeTownRegions(town);
+        plugin.getHookSync().deleteTown(town);
 
         // Delete town locally
         plugin.getTowns().remove(town.getName().toLowerCase());
+        plugin.getChunkIndex().removeTown(town);
+        plugin.getMembershipIndex().removeTown(town);
 
-        // Delete town from config
-        final String path = "Towns.";
-        plugin.getConfig().set(path + town.getName(), null);
+        // Delete stored town
+        plugin.getTownStore().deleteTown(town.getName());
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_TOWN_DELETED, town.getName(), sender.getName()));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_TOWN_DELETED, town.getName()));
 
@@ -6,8 +6,6 @@ import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.List;
 import java.util.UUID;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -92,7 +90,7 @@ public class DemoteCommand extends STCommand {
         }
 
         // Validate playername UUID
-        UUID playerUUID = PlayernameUUID.getPlayerUUID( playername );
+        UUID playerUUID = plugin.getPlayerCache().getUUID( playername );
         if (playerUUID == null) {
             sender.sendMessage(localisation.get(LocalisationEntry.ERR_CANNOT_FIND_PLAYER_UUID, playername));
             return true;
@@ -112,25 +110,15 @@ public class DemoteCommand extends STCommand {
 
         // Demote player from leader to citizen in town
         // (remove from leaders, add to citizens)
-        final String basePath = "Towns." + town.getName();
-        final String leadersPath = basePath + ".Leaders";
-        final List<String> leaders = plugin.getConfig().getStringList(leadersPath);
-        leaders.remove(playerUUID.toString());
-        plugin.getConfig().set(leadersPath, leaders);
+        plugin.getTownStore().demote(town.getName(), playerUUID);
         plugin.getTown(town.getName()).getLeaders().remove(playerUUID);
-
-        final String citizensPath = basePath + ".Citizens";
-        final List<String> citizens = plugin.getConfig().getStringList(citizensPath);
-        citizens.add(playerUUID.toString());
-        plugin.getConfig().set(citizensPath, citizens);
         plugin.getTown(town.getName()).getCitizens().add(playerUUID);
+        plugin.getMembershipIndex().put(playerUUID, town, false);
+        plugin.getHookSync().membersChanged(town);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_LEADER_DEMOTED, town.getName(), sender.getName(), playername));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_LEADER_DEMOTED, town.getName(), playername));
 
@@ -5,7 +5,6 @@ import com.gmail.jameshealey1994.simpletowns.localisation.Localisation;
 import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import java.util.UUID;
@@ -68,7 +67,7 @@ public class InfoCommand extends STCommand {
             StringJoiner toSend = new StringJoiner(", ");
             ArrayList<String> ghosts = new ArrayList<>(); // Display at the end players whose UUID couldn't be converted to names
             for (UUID uuid : town.getLeaders()) {
-                playername = PlayernameUUID.getPlayerName(uuid);
+                playername = plugin.getPlayerCache().getName(uuid);
                 if (playername != null) {
                     toSend.add(playername);
                 } else 
@@ -82,7 +81,7 @@ public class InfoCommand extends STCommand {
             StringJoiner toSend = new StringJoiner(", ");
             ArrayList<String> ghosts = new ArrayList<>(); // Display at the end players whose UUID couldn't be converted to names
             for (UUID uuid : town.getCitizens()) {
-                playername = PlayernameUUID.getPlayerName(uuid);
+                playername = plugin.getPlayerCache().getName(uuid);
                 if (playername != null) {
                     toSend.add(playername);
                 } else 
@@ -92,7 +91,7 @@ public class InfoCommand extends STCommand {
             for (String uuid : ghosts)
                 sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CITIZENS_ENTRY, ghosts));
         }
-        sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CHUNKS, town.getTownChunks().size()));
+        sender.sendMessage(localisation.get(LocalisationEntry.INFO_TOWN_CHUNKS, town.getChunkCount()));
         sender.sendMessage(localisation.get(LocalisationEntry.INFO_FOOTER));
         return true;
     }
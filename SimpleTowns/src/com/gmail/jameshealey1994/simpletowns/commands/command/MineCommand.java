@@ -0,0 +1,68 @@
+package com.gmail.jameshealey1994.simpletowns.commands.command;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.localisation.Localisation;
+import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
+import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
+import com.gmail.jameshealey1994.simpletowns.utils.MembershipIndex.Membership;
+import java.util.List;
+import java.util.StringJoiner;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+/**
+ * Class representing a Mine command.
+ * Allows you to view the towns you're a member of
+ *
+ * /... mine        Display the towns you're a member of
+ */
+public class MineCommand extends STCommand {
+
+    /**
+     * Constructor to add aliases and permissions.
+     */
+    public MineCommand() {
+        this.aliases.add("mine");
+
+        this.permissions.add(STPermission.MINE.getPermission());
+    }
+
+    @Override
+    public boolean execute(SimpleTowns plugin, CommandSender sender, String commandLabel, String[] args) {
+        final Localisation localisation = plugin.getLocalisation();
+
+        if (!(sender instanceof Player)) {
+            sender.sendMessage(localisation.get(LocalisationEntry.ERR_PLAYER_ONLY_COMMAND));
+            return true;
+        }
+
+        final Player player = (Player) sender;
+        final List<Membership> memberships = plugin.getMembershipIndex().getMemberships(player.getUniqueId());
+        if (memberships.isEmpty()) {
+            sender.sendMessage(localisation.get(LocalisationEntry.MSG_NOT_MEMBER_OF_ANY_TOWN));
+            return true;
+        }
+
+        final StringJoiner leaderOf = new StringJoiner(", ");
+        final StringJoiner citizenOf = new StringJoiner(", ");
+        for (Membership membership : memberships) {
+            if (membership.isLeader()) {
+                leaderOf.add(membership.getTown().getName());
+            } else {
+                citizenOf.add(membership.getTown().getName());
+            }
+        }
+        if (leaderOf.length() > 0) {
+            sender.sendMessage(localisation.get(LocalisationEntry.MINE_LEADER_HEADER) + " " + leaderOf.toString());
+        }
+        if (citizenOf.length() > 0) {
+            sender.sendMessage(localisation.get(LocalisationEntry.MINE_CITIZEN_HEADER) + " " + citizenOf.toString());
+        }
+        return true;
+    }
+
+    @Override
+    public String getDescription(Localisation localisation) {
+        return localisation.get(LocalisationEntry.DESCRIPTION_MINE);
+    }
+}
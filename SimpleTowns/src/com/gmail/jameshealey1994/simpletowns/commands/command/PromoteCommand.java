@@ -6,8 +6,6 @@ import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.List;
 import java.util.UUID;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -101,7 +99,7 @@ public class PromoteCommand extends STCommand {
         }
 
         // Validate playername UUID
-        UUID playerUUID = PlayernameUUID.getPlayerUUID( fullPlayerName );
+        UUID playerUUID = plugin.getPlayerCache().getUUID( fullPlayerName );
         if (playerUUID == null) {
             sender.sendMessage(localisation.get(LocalisationEntry.ERR_CANNOT_FIND_PLAYER_UUID, fullPlayerName));
             return true;
@@ -114,32 +112,22 @@ public class PromoteCommand extends STCommand {
         }
 
         // Check player isn't already a leader of town (cannot be promoted)
-        if (town.getLeaders().contains(fullPlayerName)) {
+        if (plugin.getMembershipIndex().isLeader(playerUUID, town)) {
             sender.sendMessage(localisation.get(LocalisationEntry.ERR_PLAYER_ALREADY_LEADER, fullPlayerName, town.getName()));
             return true;
         }
 
         // Promote player from citizen to leader in town
         // (remove from citizens, add to leaders)
-        final String basePath = "Towns." + town.getName();
-        final String citizensPath = basePath + ".Citizens";
-        final List<String> citizens = plugin.getConfig().getStringList(citizensPath);
-        citizens.remove(playerUUID.toString());
-        plugin.getConfig().set(citizensPath, citizens);
+        plugin.getTownStore().promote(town.getName(), playerUUID);
         plugin.getTown(town.getName()).getCitizens().remove(playerUUID);
-
-        final String leadersPath = basePath + ".Leaders";
-        final List<String> leaders = plugin.getConfig().getStringList(leadersPath);
-        leaders.add(playerUUID.toString());
-        plugin.getConfig().set(leadersPath, leaders);
         plugin.getTown(town.getName()).getLeaders().add(playerUUID);
+        plugin.getMembershipIndex().put(playerUUID, town, true);
+        plugin.getHookSync().membersChanged(town);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_CITIZEN_PROMOTED, town.getName(), sender.getName(), fullPlayerName));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_CITIZEN_PROMOTED, town.getName(), fullPlayerName));
 
@@ -40,8 +40,12 @@ public class ReloadCommand extends STCommand {
             return true;
         }
 
+        plugin.getTownStore().close(); // Don't lose changes not saved yet
+        plugin.getConfigSaver().flush(); // Nor config changes, whatever the storage
         plugin.reloadConfig();
-        plugin.setTowns(new TownUtils(plugin).getTownsFromConfig());
+        plugin.openTownStore();
+        plugin.getLocalisation().reload();
+        plugin.setTowns(new TownUtils(plugin).getTownsFromStore());
         sender.sendMessage(plugin.getLocalisation().get(LocalisationEntry.MSG_CONFIG_RELOADED));
 
         //Create and call TownAfterReloadEvent
@@ -7,8 +7,6 @@ import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.List;
 import java.util.UUID;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -96,7 +94,7 @@ public class RemoveCommand extends STCommand {
         try {
             playerUUID = UUID.fromString( playername ); // Can give UUID instead of playername in order to remove "ghosts" members
         } catch (IllegalArgumentException e) {
-            playerUUID = PlayernameUUID.getPlayerUUID( playername );
+            playerUUID = plugin.getPlayerCache().getUUID( playername );
             if (playerUUID == null) {
                 sender.sendMessage(localisation.get(LocalisationEntry.ERR_CANNOT_FIND_PLAYER_UUID, playername));
                 return true;
@@ -118,29 +116,18 @@ public class RemoveCommand extends STCommand {
             return true;
         }
 
-        // Remove member from town if citizen
-        final String citizensPath = "Towns." + town.getName() + ".Citizens";
-        final List<String> citizens = plugin.getConfig().getStringList(citizensPath);
-        citizens.remove(playerUUID.toString());
-        plugin.getConfig().set(citizensPath, citizens);
+        // Remove member from town, citizen or leader
+        plugin.getTownStore().removeMember(town.getName(), playerUUID);
         plugin.getTown(town.getName()).getCitizens().remove(playerUUID);
-
-        // Remove member from town if leader
-        final String leadersPath = "Towns." + town.getName() + ".Leaders";
-        final List<String> leaders = plugin.getConfig().getStringList(leadersPath);
-        leaders.remove(playerUUID.toString());
-        plugin.getConfig().set(leadersPath, leaders);
         plugin.getTown(town.getName()).getLeaders().remove(playerUUID);
+        plugin.getMembershipIndex().remove(playerUUID, town);
 
-        // Remove citizen from WorldGuard regions
-        plugin.getWorldGuardHook().removeMemberFromRegions(town, playerUUID);
+        // Remove member from WorldGuard regions, next tick
+        plugin.getHookSync().membersChanged(town);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_TOWN_MEMBER_REMOVED, town.getName(), sender.getName(), playername));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_MEMBER_REMOVED, town.getName(), playername));
 
@@ -8,7 +8,6 @@ import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
 import com.gmail.jameshealey1994.simpletowns.utils.TownUtils;
 import org.bukkit.command.CommandSender;
-import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 
 /**
@@ -100,30 +99,17 @@ public class RenameCommand extends STCommand {
             return true;
         }
 
-        // Rename town in config
+        // Rename stored town
         final String oldName = town.getName();
-        final String oldPath = "Towns." + oldName;
-        final ConfigurationSection values = plugin.getConfig().getConfigurationSection(oldPath);
-        plugin.getConfig().set(oldPath, null);
-
-        final String newPath = "Towns." + newName;
-        plugin.getConfig().set(newPath, values);
-
-        // Save config
-        plugin.saveConfig();
-
-        // Remove chunks from our Dynmap markerset and from WorldGuard regions
-        plugin.getDynmapHook().removeTownFromMarkerset(town);
-        plugin.getWorldGuardHook().removeTownRegions(town);
+        plugin.getTownStore().renameTown(oldName, newName);
 
         // Rename town locally
         plugin.getTowns().remove(town.getName().toLowerCase());
         town.setName(newName);
         plugin.getTowns().put(newName.toLowerCase(), town);
 
-        // Add chunks to our Dynmap markerset and to WorldGuard regions
-        plugin.getWorldGuardHook().addTownRegions(town);
-        plugin.getDynmapHook().addTownToMarkerset(town);
+        // Rename areas, which start with the town name, our Dynmap markerset and WorldGuard regions are updated next tick
+        plugin.getHookSync().renameTown(town, oldName);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_TOWN_RENAMED, oldName, town.getName(), sender.getName()));
@@ -0,0 +1,42 @@
+package com.gmail.jameshealey1994.simpletowns.commands.command;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.localisation.Localisation;
+import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
+import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Class representing a repair command.
+ * Allows you to rebuild the WorldGuard regions of the towns
+ *
+ * /... repair      Removes every region with our flag, even the ones
+ *                  missing from the region registry, and recreates the
+ *                  regions of the towns
+ *
+ * @author JamesHealey94 <jameshealey1994.gmail.com>
+ */
+public class RepairCommand extends STCommand {
+
+    /**
+     * Constructor to add aliases and permissions.
+     */
+    public RepairCommand() {
+        this.aliases.add("repair");
+
+        this.permissions.add(STPermission.REPAIR.getPermission());
+    }
+
+    @Override
+    public boolean execute(SimpleTowns plugin, CommandSender sender, String commandLabel, String[] args) {
+        final int removed = plugin.getWorldGuardHook().repairWorldGuard();
+        plugin.registerTowns(plugin.getTowns().values());
+        sender.sendMessage(plugin.getLocalisation().get(LocalisationEntry.MSG_REGIONS_REPAIRED, removed, plugin.getTowns().size()));
+        return true;
+    }
+
+    @Override
+    public String getDescription(Localisation localisation) {
+        return localisation.get(LocalisationEntry.DESCRIPTION_REPAIR);
+    }
+}
@@ -8,7 +8,6 @@ import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
 import com.gmail.jameshealey1994.simpletowns.utils.Logger;
-import java.util.List;
 import org.bukkit.Chunk;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -71,30 +70,20 @@ public class UnclaimCommand extends STCommand {
             return true;
         }
 
-        // Remove chunk from config town
-        final String path = "Towns.";
-        final List<String> chunks = plugin.getConfig().getStringList(path + town.getName() + ".Chunks." + worldname);
-        final String chunkString = chunkX + "," + chunkZ;
-        chunks.remove(chunkString);
-        plugin.getConfig().set(path + town.getName() + ".Chunks." + worldname, chunks);
+        // Remove chunk from stored town
+        final TownChunk townchunk = new TownChunk(chunk);
+        plugin.getTownStore().unclaimChunk(town.getName(), townchunk);
 
         // Remove chunk from local town
-        final TownChunk townchunk = new TownChunk(chunk);
-        town.getTownChunks().remove(townchunk);
+        town.removeChunk(townchunk);
+        plugin.getChunkIndex().remove(townchunk);
 
-        // Remove chunk from our Dynmap markerset and from WorldGuard regions
-        plugin.getDynmapHook().removeTownFromMarkerset(town);
-        plugin.getWorldGuardHook().removeTownRegions(town);
-        town.getChunksToAreas().update();
-        plugin.getWorldGuardHook().addTownRegions(town);
-        plugin.getDynmapHook().addTownToMarkerset(town);
+        // Remove chunk from the areas, our Dynmap markerset and WorldGuard regions are updated next tick
+        plugin.getHookSync().unclaimChunk(town, townchunk);
 
         // Log to file
         new Logger(plugin).log(localisation.get(LocalisationEntry.LOG_CHUNK_UNCLAIMED, town.getName(), sender.getName(), worldname, chunkX, chunkZ));
 
-        // Save config
-        plugin.saveConfig();
-
         // Send confimation message to sender
         sender.sendMessage(localisation.get(LocalisationEntry.MSG_CHUNK_UNCLAIMED, town.getName()));
         return true;
@@ -3,14 +3,29 @@ package com.gmail.jameshealey1994.simpletowns.hooks;
 import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.utils.AreaChanges;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunksToAreas;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
 import org.bukkit.Bukkit;
 import org.dynmap.DynmapAPI;
 import org.dynmap.markers.MarkerSet;
 import org.dynmap.markers.AreaMarker;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Utility methods that interact with the Dynmap API.
  * This class has to be instantiated ONCE by the plugin.
+ *
+ * The hook keeps the markers it owns for each town. When the areas of a
+ * town change, existing markers get their corners updated in place, and
+ * only missing markers are created and stale markers deleted, since Dynmap
+ * sends every marker change to every web client.
  */
 public class DynmapHook {
 
@@ -19,25 +34,41 @@ public class DynmapHook {
      */
     private MarkerSet markerset;
 
+    /**
+     * Lower case town name -> Area name -> Marker of this area.
+     * The ID of a marker is the name of its area when created, markers kept
+     * through a rename keep their ID.
+     */
+    private final HashMap<String, HashMap<String, AreaMarker>> townMarkers = new HashMap<>();
+
     /**
      * Create our Dynmap markerset if it doesn't exists.
-     * 
+     * The markerset is kept if already created, so a reload only updates
+     * the markers of the changed areas.
+     *
      * @param plugin    plugin with localisation
      * @return      true if Dynmap in install, false otherwise
      */
     public boolean checkDynmapAndCreateMarkerset( SimpleTowns plugin ) {
+        if (this.markerset != null)
+            return true;
+
         // Get Dynmap API (Or null)
         DynmapAPI dynmap = (DynmapAPI) Bukkit.getServer().getPluginManager().getPlugin("dynmap");
 
         // Check if Dynmap is installed
         if (dynmap == null)
             return false;
-        
+
         // Create Dynmap markerset if it doesn't exists
         this.markerset = dynmap.getMarkerAPI().getMarkerSet("simpletowns.markerset");
         if (this.markerset == null) {
             this.markerset = dynmap.getMarkerAPI().createMarkerSet("simpletowns.markerset", plugin.getLocalisation().get(LocalisationEntry.DYNMAP_LAYER), null, false);
             this.markerset.setHideByDefault(false);
+        } else {
+            // Left by a previous instance of the plugin, we don't own these markers
+            for (AreaMarker marker : new ArrayList<>(markerset.getAreaMarkers()))
+                marker.deleteMarker();
         }
         return true;
     }
@@ -51,53 +82,214 @@ public class DynmapHook {
 
         markerset.deleteMarkerSet();
         markerset = null;
+        townMarkers.clear();
     }
 
     /**
-     * Remove continuous chunks merges for a town from our Dynmap marketset.
+     * Remove the markers of a Town from our Dynmap marketset.
      * Does nothing if Dynmap isn't installed.
      */
     public void removeTownFromMarkerset( final Town town ) {
         if (markerset == null) return;
 
-        Integer areaNumber = 0;
-        while (true) {
-            AreaMarker marker = markerset.findAreaMarker( town.getName() + "_" + areaNumber.toString() );
-            if (marker != null)
+        final HashMap<String, AreaMarker> markers = townMarkers.remove(town.getName().toLowerCase());
+        if (markers != null)
+            for (AreaMarker marker : markers.values())
+                marker.deleteMarker();
+    }
+
+    /**
+     * Remove the markers of the towns not in the passed town names, after a
+     * reload.
+     * Does nothing if Dynmap isn't installed.
+     *
+     * @param townNames     lower case names of the towns kept
+     */
+    public void retainTowns( final Set<String> townNames ) {
+        if (markerset == null) return;
+
+        final Iterator<Map.Entry<String, HashMap<String, AreaMarker>>> towns = townMarkers.entrySet().iterator();
+        while (towns.hasNext()) {
+            final Map.Entry<String, HashMap<String, AreaMarker>> town = towns.next();
+            if (townNames.contains(town.getKey()))
+                continue;
+            for (AreaMarker marker : town.getValue().values())
                 marker.deleteMarker();
-            else
-                break;
-            areaNumber++;
+            towns.remove();
         }
     }
 
     /**
      * Add all chunks of a Town to our Dynmap marketset.
-     * Continuous chunks are merged into one area.
+     * Continuous chunks are merged into one area. Markers the Town already
+     * has are updated in place, and markers of areas no longer existing are
+     * reused or deleted.
      * Does nothing if Dynmap isn't installed.
      */
     public void addTownToMarkerset( final Town town ) {
         if (markerset == null) return;
 
-        // Add to our Dynmap marketset
-        int size;
-        double[] cornersX_converted;
-        double[] cornersZ_converted;
-        int i;
-        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
-            size = town.getChunksToAreas().areas.get(nameOfArea).size();
-
-            cornersX_converted = new double[size];
-            cornersZ_converted = new double[size];
-            for (i = 0; i < size; i++) {
-                cornersX_converted[i] = town.getChunksToAreas().areas.get(nameOfArea).get(i).x;
-                cornersZ_converted[i] = town.getChunksToAreas().areas.get(nameOfArea).get(i).z;
+        final HashMap<String, AreaMarker> markers = getMarkers(town);
+        final Set<String> staleAreas = new HashSet<>(markers.keySet());
+        staleAreas.removeAll(town.getChunksToAreas().areas.keySet());
+        syncAreas(town, markers, town.getChunksToAreas().areas.keySet(), staleAreas);
+    }
+
+    /**
+     * Move the markers of a renamed Town to its new name, and update them.
+     * Markers keep their ID, only their label and corners change.
+     * Does nothing if Dynmap isn't installed.
+     * HAS TO BE DONE AFTER THE CHUNKSTOAREAS UPDATE !
+     */
+    public void renameTown( final Town town, final String oldName ) {
+        if (markerset == null) return;
+
+        final HashMap<String, AreaMarker> markers = townMarkers.remove(oldName.toLowerCase());
+        if (markers != null)
+            townMarkers.put(town.getName().toLowerCase(), markers);
+        addTownToMarkerset(town);
+    }
+
+    /**
+     * Update the markers of the areas of a Town changed by a claim or an
+     * unclaim in our Dynmap marketset.
+     * Does nothing if Dynmap isn't installed.
+     * HAS TO BE DONE AFTER THE CHUNKSTOAREAS CHANGE !
+     */
+    public void updateTownMarkers( final Town town, final AreaChanges changes ) {
+        if (markerset == null) return;
+
+        syncAreas(town, getMarkers(town), changes.getUpdated(), changes.getRemoved().keySet());
+    }
+
+    /**
+     * Returns the markers owned by a Town, creating the container if needed.
+     */
+    private HashMap<String, AreaMarker> getMarkers( final Town town ) {
+        HashMap<String, AreaMarker> markers = townMarkers.get(town.getName().toLowerCase());
+        if (markers == null) {
+            markers = new HashMap<>();
+            townMarkers.put(town.getName().toLowerCase(), markers);
+        }
+        return markers;
+    }
+
+    /**
+     * Update the markers of areas of a Town.
+     * Markers of stale areas are reused for new areas of the same world,
+     * then the remaining ones are deleted.
+     *
+     * @param town          town of the areas
+     * @param markers       area name -> marker, of the town, updated
+     * @param areaNames     names of the areas added or changed
+     * @param staleAreas    names of the areas no longer existing
+     */
+    private void syncAreas( final Town town, final HashMap<String, AreaMarker> markers, final Collection<String> areaNames, final Collection<String> staleAreas ) {
+        final ArrayList<AreaMarker> stale = new ArrayList<>();
+        AreaMarker marker;
+        for (String nameOfArea : staleAreas) {
+            marker = markers.remove(nameOfArea);
+            if (marker != null)
+                stale.add(marker);
+        }
+
+        String world;
+        ArrayList<ChunksToAreas.Point> polygon;
+        for (String nameOfArea : areaNames) {
+            world = WorldRegistry.getName(town.getChunksToAreas().areasWorld.get(nameOfArea));
+            polygon = town.getChunksToAreas().getPolygon(nameOfArea);
+            marker = markers.get(nameOfArea);
+            if (marker != null && !marker.getWorld().equals(world)) {
+                stale.add(marker); // Markers can't change world
+                marker = null;
+            }
+            if (marker == null)
+                marker = takeMarker(stale, world, polygon);
+            if (marker == null) {
+                marker = createAreaMarker(town, nameOfArea, world, polygon);
+            } else {
+                updateAreaMarker(town, marker, polygon);
             }
+            markers.put(nameOfArea, marker);
+        }
+
+        for (AreaMarker unused : stale)
+            unused.deleteMarker();
+    }
+
+    /**
+     * Removes a marker of a world from a list of markers, preferably one
+     * with the corners of the polygon.
+     *
+     * @return      marker of the world, or null if there is none
+     */
+    private AreaMarker takeMarker( final ArrayList<AreaMarker> markers, final String world, final ArrayList<ChunksToAreas.Point> polygon ) {
+        int found = -1;
+        for (int i = 0; i < markers.size(); i++) {
+            if (!markers.get(i).getWorld().equals(world))
+                continue;
+            if (hasCorners(markers.get(i), polygon))
+                return markers.remove(i);
+            if (found == -1)
+                found = i;
+        }
+        return found == -1 ? null : markers.remove(found);
+    }
+
+    /**
+     * Create the marker of an area of a Town in our Dynmap marketset.
+     * The ID of the marker is the name of the area, unless a marker kept
+     * through a rename already has it.
+     */
+    private AreaMarker createAreaMarker( final Town town, final String nameOfArea, final String world, final ArrayList<ChunksToAreas.Point> polygon ) {
+        String markerID = nameOfArea;
+        for (int i = 1; markerset.findAreaMarker(markerID) != null; i++)
+            markerID = nameOfArea + "~" + i;
+
+        AreaMarker marker = markerset.createAreaMarker(markerID, town.getName(), false, world, getCornersX(polygon), getCornersZ(polygon), false);
+        marker.setLineStyle(2, 0.5, 0xFFFFFF);
+        marker.setFillStyle(0.2, 0xFFFFFF);
+        marker.setLabel(town.getName());
+        return marker;
+    }
 
-            AreaMarker marker = markerset.createAreaMarker(nameOfArea, town.getName(), false, town.getChunksToAreas().areasWorld.get(nameOfArea), cornersX_converted, cornersZ_converted, false);
-            marker.setLineStyle(2, 0.5, 0xFFFFFF);
-            marker.setFillStyle(0.2, 0xFFFFFF);
+    /**
+     * Update the corners and the label of the marker of an area of a Town,
+     * only if they changed.
+     */
+    private void updateAreaMarker( final Town town, final AreaMarker marker, final ArrayList<ChunksToAreas.Point> polygon ) {
+        if (!hasCorners(marker, polygon))
+            marker.setCornerLocations(getCornersX(polygon), getCornersZ(polygon));
+        if (!town.getName().equals(marker.getLabel()))
             marker.setLabel(town.getName());
+    }
+
+    /**
+     * Returns if a marker has the corners of a polygon, in the same order.
+     */
+    private static boolean hasCorners( final AreaMarker marker, final ArrayList<ChunksToAreas.Point> polygon ) {
+        if (marker.getCornerCount() != polygon.size())
+            return false;
+        for (int i = 0; i < polygon.size(); i++) {
+            if (marker.getCornerX(i) != polygon.get(i).x || marker.getCornerZ(i) != polygon.get(i).z)
+                return false;
+        }
+        return true;
+    }
+
+    private static double[] getCornersX( final ArrayList<ChunksToAreas.Point> polygon ) {
+        double[] cornersX_converted = new double[polygon.size()];
+        for (int i = 0; i < polygon.size(); i++) {
+            cornersX_converted[i] = polygon.get(i).x;
+        }
+        return cornersX_converted;
+    }
+
+    private static double[] getCornersZ( final ArrayList<ChunksToAreas.Point> polygon ) {
+        double[] cornersZ_converted = new double[polygon.size()];
+        for (int i = 0; i < polygon.size(); i++) {
+            cornersZ_converted[i] = polygon.get(i).z;
         }
+        return cornersZ_converted;
     }
 }
\ No newline at end of file
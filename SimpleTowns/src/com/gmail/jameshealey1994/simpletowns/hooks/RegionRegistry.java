@@ -0,0 +1,231 @@
+package com.gmail.jameshealey1994.simpletowns.hooks;
+
+import com.gmail.jameshealey1994.simpletowns.utils.FileUtils;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Registry of the IDs of the WorldGuard regions created by the plugin, for
+ * each world.
+ *
+ * Lets the regions of the towns be cleared without scanning every region
+ * of the server. The registry is saved to a file, so regions created before
+ * a restart or in an unloaded world can still be found. The file is written
+ * in the background. Worlds are saved by name, and loaded through the world
+ * registry, so a renamed world keeps its regions.
+ */
+public class RegionRegistry {
+
+    /**
+     * Name of the registry file.
+     */
+    private static final String FILENAME = "regions.registry";
+
+    /**
+     * Separator of the fields of a line of the registry file.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * World id -> IDs of our regions in the world, null if none.
+     */
+    private final ArrayList<HashSet<String>> regions = new ArrayList<>();
+
+    /**
+     * If the registry changed since it was loaded or saved.
+     */
+    private boolean dirty = false;
+
+    /**
+     * If the last write of the registry failed, so it is saved again.
+     */
+    private volatile boolean writeFailed = false;
+
+    /**
+     * Number of the last snapshot of the registry taken.
+     */
+    private long snapshotNumber = 0;
+
+    /**
+     * Number of the last snapshot written, guarded by the instance lock so
+     * an older snapshot is never written over a newer one.
+     */
+    private long writtenNumber = 0;
+
+    /**
+     * Records a region created in a world.
+     *
+     * @param world         id of the world
+     * @param regionId      ID of the region
+     */
+    public void add(int world, String regionId) {
+        while (regions.size() <= world) {
+            regions.add(null);
+        }
+        HashSet<String> worldRegions = regions.get(world);
+        if (worldRegions == null) {
+            worldRegions = new HashSet<>();
+            regions.set(world, worldRegions);
+        }
+        dirty |= worldRegions.add(regionId);
+    }
+
+    /**
+     * Forgets a region removed from a world.
+     *
+     * @param world         id of the world
+     * @param regionId      ID of the region
+     */
+    public void remove(int world, String regionId) {
+        if (world < regions.size() && regions.get(world) != null) {
+            dirty |= regions.get(world).remove(regionId);
+        }
+    }
+
+    /**
+     * Returns the IDs of our regions in a world.
+     *
+     * @param world     id of the world
+     * @return          IDs of the regions, unmodifiable
+     */
+    public Set<String> getRegions(int world) {
+        if (world >= regions.size() || regions.get(world) == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(regions.get(world));
+    }
+
+    /**
+     * Forgets all the regions of a world.
+     *
+     * @param world     id of the world
+     */
+    public void clear(int world) {
+        if (world < regions.size() && regions.get(world) != null && !regions.get(world).isEmpty()) {
+            regions.set(world, null);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Loads the registry file, replacing the regions recorded.
+     *
+     * @param plugin    plugin owning the registry file
+     * @return          if the registry file exists and was read in full
+     */
+    public boolean load(Plugin plugin) {
+        regions.clear();
+        dirty = false;
+        final File file = getFile(plugin);
+        if (!file.exists()) {
+            return false;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            int separator;
+            while ((line = reader.readLine()) != null) {
+                separator = line.indexOf(SEPARATOR);
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue; // Invalid line, skip it
+                }
+                add(WorldRegistry.getId(line.substring(0, separator)), line.substring(separator + 1));
+            }
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not read region registry from " + file, ex);
+            dirty = false;
+            return false; // The regions not read yet have to be found by a scan
+        }
+        dirty = false;
+        return true;
+    }
+
+    /**
+     * Saves the registry, if it changed or was never saved. The registry is
+     * copied on the calling thread, and written in the background, or now
+     * if the plugin is being disabled.
+     *
+     * @param plugin    plugin owning the registry file
+     */
+    public void save(final Plugin plugin) {
+        final File file = getFile(plugin);
+        if (!dirty && !writeFailed && file.exists() && (plugin.isEnabled() || isWritten())) {
+            return; // When disabled, a snapshot waiting for its task is written now
+        }
+        final StringBuilder data = new StringBuilder();
+        for (int world = 0; world < regions.size(); world++) {
+            if (regions.get(world) == null) {
+                continue;
+            }
+            for (String regionId : regions.get(world)) {
+                data.append(WorldRegistry.getName(world)).append(SEPARATOR).append(regionId).append('\n');
+            }
+        }
+        dirty = false;
+
+        final String snapshot = data.toString();
+        final long number = ++snapshotNumber;
+        if (!plugin.isEnabled()) {
+            write(plugin, snapshot, number); // Tasks can't be scheduled anymore
+            return;
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                write(plugin, snapshot, number);
+            }
+        });
+    }
+
+    /**
+     * Returns if the last snapshot taken was written.
+     *
+     * @return      if no snapshot is waiting to be written
+     */
+    private synchronized boolean isWritten() {
+        return writtenNumber >= snapshotNumber;
+    }
+
+    /**
+     * Writes a snapshot of the registry, through a temporary file moved
+     * over the registry file, unless a newer snapshot was written.
+     *
+     * @param plugin    plugin owning the registry file
+     * @param data      snapshot of the registry
+     * @param number    number of the snapshot
+     */
+    private synchronized void write(Plugin plugin, String data, long number) {
+        if (number <= writtenNumber) {
+            return; // Older than the registry file
+        }
+        final File file = getFile(plugin);
+        try {
+            FileUtils.writeAtomically(file, data);
+            writtenNumber = number;
+            writeFailed = false;
+        } catch (IOException ex) {
+            writeFailed = true;
+            plugin.getLogger().log(Level.SEVERE, "Could not save region registry to " + file, ex);
+        }
+    }
+
+    /**
+     * Returns the registry file.
+     *
+     * @param plugin    plugin owning the registry file
+     * @return          registry file
+     */
+    private static File getFile(Plugin plugin) {
+        return new File(plugin.getDataFolder(), FILENAME);
+    }
+}
@@ -4,22 +4,38 @@ import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
+import com.gmail.jameshealey1994.simpletowns.utils.AreaChanges;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunkUtils;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunksToAreas;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
 import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldguard.WorldGuard;
+import com.sk89q.worldguard.domains.DefaultDomain;
 import com.sk89q.worldguard.protection.regions.RegionContainer;
 import com.sk89q.worldguard.protection.managers.RegionManager;
 import com.sk89q.worldguard.protection.managers.RemovalStrategy;
 import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import com.sk89q.worldguard.protection.regions.ProtectedPolygonalRegion;
+import com.sk89q.worldguard.protection.regions.ProtectedCuboidRegion;
+import com.sk89q.worldguard.protection.regions.RegionType;
+import com.sk89q.worldguard.protection.regions.GlobalProtectedRegion;
+import com.sk89q.worldguard.protection.regions.CircularInheritanceException;
+import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.Flags;
 import com.sk89q.worldguard.protection.flags.StateFlag;
 import com.sk89q.worldguard.protection.flags.registry.FlagRegistry;
 import com.sk89q.worldguard.protection.flags.registry.FlagConflictException;
 import com.sk89q.worldguard.internal.platform.StringMatcher;
+import org.bukkit.World;
 import org.bukkit.plugin.RegisteredServiceProvider;
 import net.milkbowl.vault.permission.Permission;
 import java.lang.NoClassDefFoundError;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.text.Normalizer;
@@ -36,6 +52,56 @@ public class WorldGuardHook {
      */
     public final boolean LAND_PROTECTION_BY_WORLDGUARD = true;
 
+    /**
+     * The path to the region layout value in the config.
+     */
+    public static final String PATH_REGION_LAYOUT = "WorldGuard Region Layout";
+
+    /**
+     * Region layout with one polygonal region per area, the default.
+     */
+    public static final String LAYOUT_POLYGONS = "Polygons";
+
+    /**
+     * Region layout with a few cuboid regions per area.
+     */
+    public static final String LAYOUT_RECTANGLES = "Rectangles";
+
+    /**
+     * The path to the parent regions value in the config.
+     */
+    public static final String PATH_PARENT_REGIONS = "WorldGuard Parent Regions";
+
+    /**
+     * The path to the region sync value in the config.
+     */
+    public static final String PATH_REGION_SYNC = "WorldGuard Region Sync";
+
+    /**
+     * Region sync keeping the regions across restarts and reloads, and only
+     * changing the ones that differ from the towns. The regions stay in
+     * WorldGuard when the plugin is disabled, or removed.
+     */
+    public static final String SYNC_RECONCILE = "Reconcile";
+
+    /**
+     * Region sync removing the regions on disable and reload, and creating
+     * them again, the default.
+     */
+    public static final String SYNC_RECREATE = "Recreate";
+
+    /**
+     * Added to the region name of an area, before the number of the
+     * rectangle, for the cuboid regions of the area.
+     */
+    private static final String RECTANGLE_SUFFIX = "_rect";
+
+    /**
+     * Added to the region name of a town, for the parent region of its
+     * areas. Area names end with a number, so they can't end with it.
+     */
+    private static final String PARENT_SUFFIX = "_town";
+
     /**
      * SimpleTowns plugin.
      */
@@ -51,6 +117,29 @@ public class WorldGuardHook {
      */
     private StringMatcher matcher;
 
+    /**
+     * World id -> WorldEdit world, looked up once per loaded world, null for
+     * worlds not looked up yet.
+     */
+    private final ArrayList<com.sk89q.worldedit.world.World> worlds = new ArrayList<>();
+
+    /**
+     * IDs of the regions we created, by world.
+     */
+    private final RegionRegistry ownedRegions = new RegionRegistry();
+
+    /**
+     * If the region registry file was found. If not, regions created by an
+     * older version are only found by scanning all regions.
+     */
+    private boolean registryFound = false;
+
+    /**
+     * World id -> IDs of the regions added since the reconciliation of the
+     * world started, null for worlds not being reconciled.
+     */
+    private final ArrayList<HashSet<String>> reconciledRegions = new ArrayList<>();
+
     /**
      * Our WorldGuard flag to mark our regions.
      */
@@ -92,52 +181,205 @@ public class WorldGuardHook {
         return "towns_autogenerated_" + Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("[^\\p{ASCII}]", "");
     }
 
-    public void addMemberToRegions( final Town town, UUID player ) {
+    /**
+     * Set the members of the WorldGuard regions of a Town to its leaders
+     * and citizens, after they changed.
+     * With parent regions, only the parent region of each world changes.
+     */
+    public void updateTownMembers( final Town town ) {
         if (!LAND_PROTECTION_BY_WORLDGUARD) return;
 
-        String world;
         RegionManager regions;
-        ProtectedRegion region;
-        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
-            world = town.getChunksToAreas().areasWorld.get(nameOfArea);
-            regions = container.get(matcher.getWorldByName(world));
-            if (regions != null) {
-                region = regions.getRegion(normalizeName(nameOfArea));
-                if (region != null)
-                    region.getMembers().addPlayer(player);
+        if (isUsingParentRegions()) {
+            ProtectedRegion parent;
+            for (int world : getAreaWorlds(town)) {
+                regions = getRegionManager(world);
+                if (regions == null)
+                    continue;
+                parent = regions.getRegion(parentName(town.getName()));
+                if (parent != null)
+                    setMembers(town, parent.getMembers());
             }
+            return;
         }
+        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
+            int world = town.getChunksToAreas().areasWorld.get(nameOfArea);
+            regions = getRegionManager(world);
+            if (regions != null)
+                for (ProtectedRegion region : getAreaRegions(regions, world, nameOfArea))
+                    setMembers(town, region.getMembers());
+        }
+    }
+
+    /**
+     * Forget the WorldEdit world of an unloaded world, it is looked up again
+     * when the world is loaded.
+     */
+    public void releaseWorld( final int world ) {
+        if (world < worlds.size())
+            worlds.set(world, null);
+    }
+
+    /**
+     * Load the IDs of the regions we created, once the worlds have their ids.
+     */
+    public void loadRegionRegistry() {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        registryFound = ownedRegions.load(plugin);
     }
 
-    public void removeMemberFromRegions( final Town town, UUID player ) {
+    /**
+     * Save the IDs of the regions we created in the background, if they
+     * changed.
+     */
+    public void saveRegionRegistry() {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        ownedRegions.save(plugin);
+    }
+
+    /**
+     * Prepare the regions of the loaded worlds before the towns are added.
+     * When reconciling, existing regions are kept, and the ones no town
+     * adds are removed by finishReconciliation. Otherwise, they are all
+     * removed.
+     */
+    public void prepareRegions() {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        reconciledRegions.clear();
+        if (!registryFound || !isReconciling()) {
+            clearWorldGuard();
+        }
+        if (isReconciling()) {
+            for (World world : plugin.getServer().getWorlds())
+                startReconciliation(WorldRegistry.getId(world));
+        }
+    }
+
+    /**
+     * Prepare the regions of a loaded world before its towns are added.
+     * Like prepareRegions, for one world.
+     */
+    public void prepareWorld( final int world ) {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        if (isReconciling()) {
+            startReconciliation(world);
+        } else {
+            clearWorld(world);
+        }
+    }
+
+    /**
+     * Remove the regions we created that no town added since the
+     * reconciliation started, in the worlds being reconciled.
+     * HAS TO BE DONE AFTER ALL THE TOWNS ARE ADDED !
+     */
+    public void finishReconciliation() {
         if (!LAND_PROTECTION_BY_WORLDGUARD) return;
 
-        String world;
         RegionManager regions;
         ProtectedRegion region;
-        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
-            world = town.getChunksToAreas().areasWorld.get(nameOfArea);
-            regions = container.get(matcher.getWorldByName(world));
-            if (regions != null) {
-                region = regions.getRegion(normalizeName(nameOfArea));
-                if (region != null)
-                    region.getMembers().removePlayer(player);
+        for (int world = 0; world < reconciledRegions.size(); world++) {
+            if (reconciledRegions.get(world) == null)
+                continue;
+            regions = getRegionManager(world);
+            if (regions == null)
+                continue; // Unloaded since, its regions are reconciled when loaded again
+            for (String regionId : new ArrayList<>(ownedRegions.getRegions(world))) {
+                if (reconciledRegions.get(world).contains(regionId))
+                    continue;
+                region = regions.getRegion(regionId);
+                if (region != null && region.getFlag(IS_SIMPLETOWN_REGION) != null)
+                    regions.removeRegion(regionId, RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+                ownedRegions.remove(world, regionId);
             }
         }
+        reconciledRegions.clear();
     }
 
+    /**
+     * Remove or keep our regions when the plugin is disabled, depending on
+     * the region sync, and save our registry.
+     */
+    public void onDisable() {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        if (isReconciling()) {
+            ownedRegions.save(plugin); // Regions are reconciled on enable
+        } else {
+            clearWorldGuard();
+        }
+    }
 
+    /**
+     * Remove all the regions we created in the loaded worlds, found in our
+     * registry. Regions of unloaded worlds are removed when they load.
+     * Without a registry, the first clear scans all regions.
+     */
     public void clearWorldGuard() {
         if (!LAND_PROTECTION_BY_WORLDGUARD) return;
 
-        StateFlag.State flag;
-        for (RegionManager regions : container.getLoaded()) {
-            for (String regionName : regions.getRegions().keySet()) {
-                flag = regions.getRegion(regionName).getFlag(IS_SIMPLETOWN_REGION);
-                if (flag != null)
-                    regions.removeRegion(regionName, RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+        if (!registryFound) {
+            repairWorldGuard();
+            registryFound = true;
+            return;
+        }
+        for (World world : plugin.getServer().getWorlds())
+            clearWorld(WorldRegistry.getId(world));
+        ownedRegions.save(plugin);
+    }
+
+    /**
+     * Remove the regions we created in a world, found in our registry.
+     * Does nothing if the world isn't loaded.
+     */
+    public void clearWorld( final int world ) {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        RegionManager regions = getRegionManager(world);
+        if (regions == null)
+            return;
+
+        ProtectedRegion region;
+        for (String regionId : ownedRegions.getRegions(world)) {
+            region = regions.getRegion(regionId);
+            if (region != null && region.getFlag(IS_SIMPLETOWN_REGION) != null)
+                regions.removeRegion(regionId, RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+        }
+        ownedRegions.clear(world);
+    }
+
+    /**
+     * Remove all the regions with our flag in the loaded worlds, by
+     * scanning every region, including the regions missing from our
+     * registry.
+     *
+     * @return      number of regions removed
+     */
+    public int repairWorldGuard() {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return 0;
+
+        int removed = 0;
+        int world;
+        RegionManager regions;
+        for (World loadedWorld : plugin.getServer().getWorlds()) {
+            world = WorldRegistry.getId(loadedWorld);
+            regions = getRegionManager(world);
+            if (regions == null)
+                continue;
+            for (ProtectedRegion region : new ArrayList<>(regions.getRegions().values())) {
+                if (region.getFlag(IS_SIMPLETOWN_REGION) != null && regions.hasRegion(region.getId())) {
+                    regions.removeRegion(region.getId(), RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+                    removed++;
+                }
             }
+            ownedRegions.clear(world);
         }
+        ownedRegions.save(plugin);
+        return removed;
     }
 
     /**
@@ -147,55 +389,380 @@ public class WorldGuardHook {
     public void removeTownRegions( final Town town ) {
         if (!LAND_PROTECTION_BY_WORLDGUARD) return;
 
-        String world;
-        RegionManager regions;
         for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
-            world = town.getChunksToAreas().areasWorld.get(nameOfArea);
-            regions = container.get(matcher.getWorldByName(world));
-            if (regions != null)
-                regions.removeRegion(normalizeName(nameOfArea), RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+            removeAreaRegions(town.getChunksToAreas().areasWorld.get(nameOfArea), nameOfArea);
         }
+        removeParentRegions(town.getName());
+    }
+
+    /**
+     * Remove the parent regions of a Town in the loaded worlds, named after
+     * the Town, before its rename or its deletion.
+     */
+    public void removeParentRegions( final String townName ) {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        for (World world : plugin.getServer().getWorlds())
+            removeParentRegion(WorldRegistry.getId(world), townName);
     }
 
     /**
      * Add WorldGuard regions for a Town.
+     * With parent regions, the parent region of each world is set up once,
+     * then the areas only get their geometry.
      */
     public void addTownRegions( final Town town ) {
         if (!LAND_PROTECTION_BY_WORLDGUARD) return;
 
-        ArrayList<BlockVector2> points;
-        int size;
-        int i;
+        if (isUsingParentRegions()) {
+            RegionManager regions;
+            for (int world : getAreaWorlds(town)) {
+                regions = getRegionManager(world);
+                if (regions != null)
+                    addParentRegion(town, world, regions);
+            }
+        }
+        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
+            addAreaRegion(town, nameOfArea);
+        }
+    }
+
+    /**
+     * Update WorldGuard regions for the areas of a Town changed by a claim
+     * or an unclaim.
+     * HAS TO BE DONE AFTER THE CHUNKSTOAREAS CHANGE !
+     */
+    public void updateTownRegions( final Town town, final AreaChanges changes ) {
+        if (!LAND_PROTECTION_BY_WORLDGUARD) return;
+
+        for (Map.Entry<String, Integer> removedArea : changes.getRemoved().entrySet()) {
+            removeAreaRegions(removedArea.getValue(), removedArea.getKey());
+        }
+        for (String nameOfArea : changes.getUpdated()) {
+            addAreaRegion(town, nameOfArea);
+        }
+
+        // Parent regions of worlds without areas left
+        if (!changes.getRemoved().isEmpty() && isUsingParentRegions()) {
+            Set<Integer> areaWorlds = getAreaWorlds(town);
+            for (int world : new HashSet<>(changes.getRemoved().values()))
+                if (!areaWorlds.contains(world))
+                    removeParentRegion(world, town.getName());
+        }
+    }
+
+    /**
+     * Add the WorldGuard regions of an area of a Town.
+     * Depending on the region layout, the area is one polygonal region, or a
+     * few cuboid regions, which WorldGuard checks faster.
+     * Existing regions with the same geometry are kept, only their members
+     * and flags that differ are changed, so WorldGuard has nothing to save
+     * for unchanged areas. Other regions of the area are replaced.
+     */
+    private void addAreaRegion( final Town town, final String nameOfArea ) {
+        int world = town.getChunksToAreas().areasWorld.get(nameOfArea);
+        RegionManager regions = getRegionManager(world);
+        if (regions == null)
+            return;
+
         int minY = 0;
         int maxY = 256;
-        ProtectedRegion region;
-        String world;
-        RegionManager regions;
-        for (String nameOfArea : town.getChunksToAreas().areas.keySet()) {
-            points = new ArrayList();
-            size = town.getChunksToAreas().areas.get(nameOfArea).size();
+        List<ProtectedRegion> areaRegions = new ArrayList<>();
+        if (isRectangleLayout()) {
+            int rectangleNumber = 0;
+            for (ChunksToAreas.Rectangle rectangle : town.getChunksToAreas().getRectangles(nameOfArea)) {
+                areaRegions.add(new ProtectedCuboidRegion(normalizeName(nameOfArea) + RECTANGLE_SUFFIX + rectangleNumber,
+                        BlockVector3.at(rectangle.minX * ChunkUtils.WIDTH, minY, rectangle.minZ * ChunkUtils.WIDTH),
+                        BlockVector3.at(rectangle.maxX * ChunkUtils.WIDTH + ChunkUtils.WIDTH - 1, maxY, rectangle.maxZ * ChunkUtils.WIDTH + ChunkUtils.WIDTH - 1)));
+                rectangleNumber++;
+            }
+        } else {
+            ArrayList<BlockVector2> points = new ArrayList();
+            for (ChunksToAreas.Point point : town.getChunksToAreas().getPolygon(nameOfArea)) {
+                points.add(BlockVector2.at(point.x, point.z));
+            }
+            areaRegions.add(new ProtectedPolygonalRegion(normalizeName(nameOfArea), points, minY, maxY));
+        }
 
-            for (i = 0; i < size; i++) {
-                points.add(BlockVector2.at(town.getChunksToAreas().areas.get(nameOfArea).get(i).x, town.getChunksToAreas().areas.get(nameOfArea).get(i).z));
+        // The previous geometry or layout may have more regions
+        Set<String> regionIds = new HashSet<>();
+        for (ProtectedRegion region : areaRegions)
+            regionIds.add(region.getId());
+        for (ProtectedRegion region : getAreaRegions(regions, world, nameOfArea)) {
+            if (!regionIds.contains(region.getId())) {
+                regions.removeRegion(region.getId(), RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+                ownedRegions.remove(world, region.getId());
             }
-            region = new ProtectedPolygonalRegion(normalizeName(nameOfArea), points, minY, maxY);
-            for (UUID leader : town.getLeaders())
-                region.getMembers().addPlayer(leader);
-            for (UUID citizen : town.getCitizens())
-                region.getMembers().addPlayer(citizen);
-            region.setFlag(Flags.GREET_MESSAGE, plugin.getLocalisation().get(LocalisationEntry.MSG_ENTERED_TOWN, town.getName()));
-            region.setFlag(Flags.FAREWELL_MESSAGE, plugin.getLocalisation().get(LocalisationEntry.MSG_EXITED_TOWN, town.getName()));
-            region.setFlag(IS_SIMPLETOWN_REGION, StateFlag.State.ALLOW);
-
-            world = town.getChunksToAreas().areasWorld.get(nameOfArea);
-            if (vaultPermissions != null)
-                for (String groupName : vaultPermissions.getGroups())
-                    if (vaultPermissions.groupHas(world, groupName, STPermission.ADMIN.getPermission().getName()))
-                        region.getMembers().addGroup(groupName);
-
-            regions = container.get(matcher.getWorldByName(world));
-            if (regions != null)
-                regions.addRegion(region); // If the region already exists, it will be overwritten
         }
+
+        ProtectedRegion parent = isUsingParentRegions() ? getParentRegion(town, world, regions) : null;
+        ProtectedRegion existing;
+        for (ProtectedRegion region : areaRegions) {
+            existing = regions.getRegion(region.getId());
+            if (existing != null && existing.getFlag(IS_SIMPLETOWN_REGION) != null && hasSameGeometry(existing, region)) {
+                region = existing;
+            } else {
+                regions.addRegion(region);
+            }
+            if (parent != null) {
+                setupChildRegion(region, parent);
+            } else {
+                setupRegion(town, region, world);
+            }
+            ownedRegions.add(world, region.getId());
+            markReconciled(world, region.getId());
+        }
+    }
+
+    /**
+     * Returns the parent region of a Town in a world, adding it if needed.
+     */
+    private ProtectedRegion getParentRegion( final Town town, final int world, final RegionManager regions ) {
+        ProtectedRegion parent = regions.getRegion(parentName(town.getName()));
+        if (parent == null || parent.getType() != RegionType.GLOBAL || parent.getFlag(IS_SIMPLETOWN_REGION) == null)
+            return addParentRegion(town, world, regions);
+
+        markReconciled(world, parent.getId());
+        return parent;
+    }
+
+    /**
+     * Add the parent region of a Town in a world, holding the members and
+     * the flags of the areas of the Town. It has no geometry, WorldGuard
+     * only uses it through the areas.
+     * If the region already exists, only its members and flags that differ
+     * are changed.
+     */
+    private ProtectedRegion addParentRegion( final Town town, final int world, final RegionManager regions ) {
+        ProtectedRegion parent = regions.getRegion(parentName(town.getName()));
+        if (parent != null && parent.getType() == RegionType.GLOBAL && parent.getFlag(IS_SIMPLETOWN_REGION) != null) {
+            setupRegion(town, parent, world);
+        } else {
+            parent = new GlobalProtectedRegion(parentName(town.getName()));
+            setupRegion(town, parent, world);
+            regions.addRegion(parent);
+        }
+        ownedRegions.add(world, parent.getId());
+        markReconciled(world, parent.getId());
+        return parent;
+    }
+
+    /**
+     * Remove the parent region of a Town in a world.
+     */
+    private void removeParentRegion( final int world, final String townName ) {
+        RegionManager regions = getRegionManager(world);
+        if (regions == null)
+            return;
+
+        ProtectedRegion parent = regions.getRegion(parentName(townName));
+        if (parent != null && parent.getFlag(IS_SIMPLETOWN_REGION) != null) {
+            regions.removeRegion(parent.getId(), RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+            ownedRegions.remove(world, parent.getId());
+        }
+    }
+
+    /**
+     * Returns the ids of the worlds a Town has areas in.
+     */
+    private static Set<Integer> getAreaWorlds( final Town town ) {
+        return new HashSet<>(town.getChunksToAreas().areasWorld.values());
+    }
+
+    /**
+     * Returns the region name of the parent region of a Town.
+     */
+    private String parentName( final String townName ) {
+        return normalizeName(townName) + PARENT_SUFFIX;
+    }
+
+    /**
+     * Returns if two regions have the same type and the same points.
+     */
+    private static boolean hasSameGeometry( final ProtectedRegion region, final ProtectedRegion other ) {
+        if (region.getType() != other.getType())
+            return false;
+        if (!region.getMinimumPoint().equals(other.getMinimumPoint()) || !region.getMaximumPoint().equals(other.getMaximumPoint()))
+            return false;
+        return region.getType() != RegionType.POLYGON || region.getPoints().equals(other.getPoints());
+    }
+
+    /**
+     * Set the members and the flags of a region of a Town.
+     * Only what differs is changed, since WorldGuard saves every region
+     * marked as changed.
+     */
+    private void setupRegion( final Town town, final ProtectedRegion region, final int world ) {
+        if (region.getParent() != null && region.getParent().getFlag(IS_SIMPLETOWN_REGION) != null) {
+            try {
+                region.setParent(null); // Set by the layout with parent regions
+            } catch (CircularInheritanceException ex) {
+                // Can't happen without a parent
+            }
+        }
+        setMembers(town, region.getMembers());
+        setFlag(region, Flags.GREET_MESSAGE, plugin.getLocalisation().get(LocalisationEntry.MSG_ENTERED_TOWN, town.getName()));
+        setFlag(region, Flags.FAREWELL_MESSAGE, plugin.getLocalisation().get(LocalisationEntry.MSG_EXITED_TOWN, town.getName()));
+        setFlag(region, IS_SIMPLETOWN_REGION, StateFlag.State.ALLOW);
+
+        if (vaultPermissions != null)
+            for (String groupName : vaultPermissions.getGroups())
+                if (vaultPermissions.groupHas(WorldRegistry.getName(world), groupName, STPermission.ADMIN.getPermission().getName()) && !region.getMembers().getGroups().contains(groupName.toLowerCase()))
+                    region.getMembers().addGroup(groupName);
+    }
+
+    /**
+     * Make a region of an area a geometry-only child of the parent region
+     * of its Town, which has the members and the flags. Members and flags
+     * set on the region by the layout without parent regions are removed.
+     */
+    private void setupChildRegion( final ProtectedRegion region, final ProtectedRegion parent ) {
+        if (region.getMembers().size() > 0)
+            region.getMembers().removeAll();
+        setFlag(region, Flags.GREET_MESSAGE, null);
+        setFlag(region, Flags.FAREWELL_MESSAGE, null);
+        setFlag(region, IS_SIMPLETOWN_REGION, StateFlag.State.ALLOW);
+
+        if (region.getParent() != parent) {
+            try {
+                region.setParent(parent);
+            } catch (CircularInheritanceException ex) {
+                plugin.getLogger().log(Level.WARNING, "Could not set parent region of {0}: {1}", new Object[] {region.getId(), ex.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Set a flag of a region, only if its value differs.
+     * A null value unsets the flag.
+     */
+    private static <V> void setFlag( final ProtectedRegion region, final Flag<V> flag, final V value ) {
+        V current = region.getFlag(flag);
+        if (value == null ? current != null : !value.equals(current))
+            region.setFlag(flag, value);
+    }
+
+    /**
+     * Set the players of a region domain to the leaders and citizens of a
+     * Town, groups are kept. Only the players that differ are changed.
+     */
+    private void setMembers( final Town town, final DefaultDomain members ) {
+        for (UUID player : new ArrayList<>(members.getUniqueIds()))
+            if (!town.hasMember(player))
+                members.removePlayer(player);
+        for (UUID leader : town.getLeaders())
+            if (!members.getUniqueIds().contains(leader))
+                members.addPlayer(leader);
+        for (UUID citizen : town.getCitizens())
+            if (!members.getUniqueIds().contains(citizen))
+                members.addPlayer(citizen);
+    }
+
+    /**
+     * Remove the WorldGuard regions of an area, whatever their layout.
+     */
+    private void removeAreaRegions( final int world, final String nameOfArea ) {
+        RegionManager regions = getRegionManager(world);
+        if (regions == null)
+            return;
+
+        for (ProtectedRegion region : getAreaRegions(regions, world, nameOfArea)) {
+            regions.removeRegion(region.getId(), RemovalStrategy.UNSET_PARENT_IN_CHILDREN);
+            ownedRegions.remove(world, region.getId());
+        }
+    }
+
+    /**
+     * Start the reconciliation of the regions of a world.
+     */
+    private void startReconciliation( final int world ) {
+        while (reconciledRegions.size() <= world)
+            reconciledRegions.add(null);
+        reconciledRegions.set(world, new HashSet<>());
+    }
+
+    /**
+     * Mark a region added, so it is kept when the reconciliation of its
+     * world finishes.
+     */
+    private void markReconciled( final int world, final String regionId ) {
+        if (world < reconciledRegions.size() && reconciledRegions.get(world) != null)
+            reconciledRegions.get(world).add(regionId);
+    }
+
+    /**
+     * Returns the WorldGuard region manager of a world, or null if the world
+     * isn't loaded. The WorldEdit world is only looked up by name the first
+     * time.
+     */
+    private RegionManager getRegionManager( final int world ) {
+        while (worlds.size() <= world)
+            worlds.add(null);
+        com.sk89q.worldedit.world.World worldEditWorld = worlds.get(world);
+        if (worldEditWorld == null) {
+            worldEditWorld = matcher.getWorldByName(WorldRegistry.getName(world));
+            if (worldEditWorld == null)
+                return null;
+            worlds.set(world, worldEditWorld);
+        }
+        return container.get(worldEditWorld);
+    }
+
+    /**
+     * Returns the existing WorldGuard regions of an area, whatever their
+     * layout, found in our registry: the polygon named after the area, and
+     * the cuboids named after the area followed by the rectangle suffix and
+     * their number.
+     */
+    private List<ProtectedRegion> getAreaRegions( final RegionManager regions, final int world, final String nameOfArea ) {
+        List<ProtectedRegion> areaRegions = new ArrayList<>();
+        String areaId = normalizeName(nameOfArea);
+        String rectanglePrefix = areaId + RECTANGLE_SUFFIX;
+        ProtectedRegion region;
+        for (String regionId : ownedRegions.getRegions(world)) {
+            if (!regionId.equals(areaId) && !isRectangleId(regionId, rectanglePrefix))
+                continue;
+            region = regions.getRegion(regionId);
+            if (region != null)
+                areaRegions.add(region);
+        }
+        return areaRegions;
+    }
+
+    /**
+     * Returns if a region ID is the prefix followed by a rectangle number.
+     */
+    private static boolean isRectangleId( final String regionId, final String rectanglePrefix ) {
+        if (regionId.length() == rectanglePrefix.length() || !regionId.startsWith(rectanglePrefix))
+            return false;
+        for (int i = rectanglePrefix.length(); i < regionId.length(); i++)
+            if (!Character.isDigit(regionId.charAt(i)))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns if areas are registered as cuboid regions instead of polygonal
+     * regions, by checking the configuration file.
+     */
+    private boolean isRectangleLayout() {
+        return LAYOUT_RECTANGLES.equalsIgnoreCase(plugin.getConfig().getString(PATH_REGION_LAYOUT, LAYOUT_POLYGONS));
+    }
+
+    /**
+     * Returns if the areas of a town are children of a parent region per
+     * world, holding the members and the flags, by checking the
+     * configuration file.
+     */
+    private boolean isUsingParentRegions() {
+        return plugin.getConfig().getBoolean(PATH_PARENT_REGIONS, false);
+    }
+
+    /**
+     * Returns if existing regions are reconciled with the towns instead of
+     * being removed and created again, by checking the configuration file.
+     */
+    private boolean isReconciling() {
+        return !SYNC_RECREATE.equalsIgnoreCase(plugin.getConfig().getString(PATH_REGION_SYNC, SYNC_RECREATE));
     }
 }
\ No newline at end of file
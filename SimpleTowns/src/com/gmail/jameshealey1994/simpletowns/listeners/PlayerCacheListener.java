@@ -0,0 +1,37 @@
+package com.gmail.jameshealey1994.simpletowns.listeners;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+/**
+ * Listener caching the names of the players who join the server.
+ */
+public class PlayerCacheListener implements Listener {
+
+    /**
+     * Plugin associated with the Listener.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Constructor - Initialises associated plugin.
+     *
+     * @param plugin    plugin associated with the listener
+     */
+    public PlayerCacheListener(SimpleTowns plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Caches the name of the player who joined.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getPlayerCache().put(event.getPlayer());
+    }
+}
@@ -1,12 +1,22 @@
 package com.gmail.jameshealey1994.simpletowns.listeners;
 
 import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.events.TownAddEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownAfterReloadEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownClaimEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownCreateEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownDeleteEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownRemoveEvent;
+import com.gmail.jameshealey1994.simpletowns.events.TownUnclaimEvent;
 import com.gmail.jameshealey1994.simpletowns.localisation.Localisation;
 import com.gmail.jameshealey1994.simpletowns.localisation.LocalisationEntry;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.permissions.STPermission;
+import com.gmail.jameshealey1994.simpletowns.utils.ProtectionCache;
 import com.gmail.jameshealey1994.simpletowns.utils.TownUtils;
-import java.util.Objects;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.Material;
 import org.bukkit.entity.Arrow;
@@ -23,10 +33,12 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.hanging.HangingBreakByEntityEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractAtEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerTakeLecternBookEvent;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.Lectern;
@@ -43,6 +55,16 @@ public class STListener implements Listener {
      */
     private final SimpleTowns plugin;
 
+    /**
+     * Build decisions of the players, by chunk and by y-band.
+     */
+    private final ProtectionCache protectionCache;
+
+    /**
+     * Y value of the mine roof, read from the config when loaded.
+     */
+    private int mineRoofY;
+
     /**
      * Constructor - Initialises associated plugin.
      *
@@ -50,6 +72,8 @@ public class STListener implements Listener {
      */
     public STListener(SimpleTowns plugin) {
         this.plugin = plugin;
+        this.protectionCache = new ProtectionCache(plugin);
+        this.mineRoofY = new TownUtils(plugin).getMineRoofY();
     }
 
     /**
@@ -313,9 +337,32 @@ public class STListener implements Listener {
      */
     @EventHandler (priority = EventPriority.NORMAL, ignoreCancelled = true)
     public void onPlayerMove(PlayerMoveEvent event) {
-        final Town exited = plugin.getTown(event.getFrom().getChunk());
-        final Town entered = plugin.getTown(event.getTo().getChunk());
-        if (!Objects.equals(exited, entered)) {
+        final Location from = event.getFrom();
+        final Location to = event.getTo();
+        if (to == null) {
+            return;
+        }
+
+        // Chunk coordinates from block coordinates, without loading chunks
+        final int fromChunkX = from.getBlockX() >> 4;
+        final int fromChunkZ = from.getBlockZ() >> 4;
+        final int toChunkX = to.getBlockX() >> 4;
+        final int toChunkZ = to.getBlockZ() >> 4;
+        final World fromWorld = from.getWorld();
+        final World toWorld = to.getWorld();
+
+        // Most moves (and all head rotations) stay in the same chunk
+        if (fromChunkX == toChunkX && fromChunkZ == toChunkZ && fromWorld == toWorld) {
+            return;
+        }
+
+        if (fromWorld == null || toWorld == null) {
+            return;
+        }
+
+        final Town exited = plugin.getChunkIndex().get(WorldRegistry.getId(fromWorld), fromChunkX, fromChunkZ);
+        final Town entered = plugin.getChunkIndex().get(WorldRegistry.getId(toWorld), toChunkX, toChunkZ);
+        if (exited != entered) { // Same Town instance, Town.equals() would compare every chunk
             final Player player = event.getPlayer();
             final Localisation localisation = plugin.getLocalisation();
             if (exited != null) {
@@ -327,28 +374,144 @@ public class STListener implements Listener {
         }
     }
 
+    /**
+     * Invalidates the build decisions before a chunk is claimed.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownClaimEvent(TownClaimEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Invalidates the build decisions before a chunk is unclaimed.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownUnclaimEvent(TownUnclaimEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Invalidates the build decisions before a town is created.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownCreateEvent(TownCreateEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Invalidates the build decisions before a town is deleted.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownDeleteEvent(TownDeleteEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Invalidates the build decisions before a citizen is added to a town.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownAddEvent(TownAddEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Invalidates the build decisions before a member is removed from a town.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTownRemoveEvent(TownRemoveEvent event) {
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Reads the mine roof again, and invalidates the build decisions, once
+     * the towns and the config are reloaded.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR)
+    public void onTownAfterReloadEvent(TownAfterReloadEvent event) {
+        mineRoofY = new TownUtils(plugin).getMineRoofY();
+        protectionCache.invalidate();
+    }
+
+    /**
+     * Removes the build decisions of a player changing world, permission
+     * plugins often recalculate permissions per world.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorldEvent(PlayerChangedWorldEvent event) {
+        protectionCache.remove(event.getPlayer());
+    }
+
+    /**
+     * Removes the build decisions of a player leaving the server.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler (priority = EventPriority.MONITOR)
+    public void onPlayerQuitEvent(PlayerQuitEvent event) {
+        protectionCache.remove(event.getPlayer());
+    }
+
     /**
      * Returns if a player can break or place a block.
      * (if the chunk the block is in belongs to a town they are a member of)
+     * Decisions are cached per chunk, and per side of the mine roof.
      *
      * @param player        player being checked
      * @param block         block being checked
      * @return              if the player can build
      */
     private boolean canBuild(Player player, Block block) {
+        final int worldId = WorldRegistry.getId(block.getWorld());
+        final int chunkX = block.getX() >> 4;
+        final int chunkZ = block.getZ() >> 4;
+        final int band = block.getY() <= mineRoofY ? 0 : 1;
+        final int cached = protectionCache.get(player, worldId, chunkX, chunkZ, band);
+        if (cached != ProtectionCache.UNKNOWN) {
+            return cached == ProtectionCache.ALLOWED;
+        }
+
+        final boolean allowed = decideCanBuild(player, plugin.getChunkIndex().get(worldId, chunkX, chunkZ), band == 0);
+        protectionCache.put(player, worldId, chunkX, chunkZ, band, allowed);
+        return allowed;
+    }
+
+    /**
+     * Returns if a player can build in a chunk, checking their permissions.
+     *
+     * @param player        player being checked
+     * @param town          town owning the chunk, or null
+     * @param mine          if the block is below the mine roof
+     * @return              if the player can build
+     */
+    private boolean decideCanBuild(Player player, Town town, boolean mine) {
         if (player.hasPermission(STPermission.ADMIN.getPermission())) {
             return true;
         }
 
-        final Town town = plugin.getTown(block.getChunk());
         if (town == null) {
-            if (block.getLocation().getBlockY() <= new TownUtils(plugin).getMineRoofY()) {
+            if (mine) {
                 return player.hasPermission(STPermission.BUILD_MINES.getPermission());
             } else {
                 return player.hasPermission(STPermission.BUILD_WILDERNESS.getPermission());
             }
         } else {
-            return town.hasMember(player.getUniqueId()) && player.hasPermission(STPermission.BUILD_TOWNS.getPermission());
+            return plugin.getMembershipIndex().isMember(player.getUniqueId(), town) && player.hasPermission(STPermission.BUILD_TOWNS.getPermission());
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.gmail.jameshealey1994.simpletowns.listeners;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.utils.AreaChanges;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Listener activating the towns of a world when it is loaded, and releasing
+ * them when it is unloaded.
+ * Areas, WorldGuard regions and Dynmap markers only exist for loaded
+ * worlds.
+ */
+public class WorldListener implements Listener {
+
+    /**
+     * Plugin associated with the Listener.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Constructor - Initialises associated plugin.
+     *
+     * @param plugin    plugin associated with the listener
+     */
+    public WorldListener(SimpleTowns plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Merges the chunks of the towns in the loaded world into areas, which
+     * are added to our Dynmap markerset and to WorldGuard regions next tick.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        final int world = WorldRegistry.register(event.getWorld()); // May have been renamed
+        plugin.getWorldGuardHook().prepareWorld(world); // Regions left since the world was unloaded
+        for (Town town : plugin.getTowns().values()) {
+            plugin.getHookSync().areasChanged(town, town.getChunksToAreas().activateWorld(world));
+        }
+        plugin.getHookSync().start(); // Finishes the reconciliation, even without towns in the world
+    }
+
+    /**
+     * Removes the areas of the towns in the unloaded world, and removes them
+     * from our Dynmap markerset and from WorldGuard regions now, while the
+     * regions of the world can still be found.
+     *
+     * @param event     event being handled
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        final int world = WorldRegistry.getId(event.getWorld());
+        for (Town town : plugin.getTowns().values()) {
+            final AreaChanges changes = town.getChunksToAreas().releaseWorld(world);
+            if (!changes.isEmpty()) {
+                plugin.getHookSync().areasChanged(town, changes);
+                plugin.getHookSync().syncTown(town);
+            }
+        }
+        plugin.getWorldGuardHook().releaseWorld(world);
+    }
+}
@@ -7,8 +7,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.IllegalFormatException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.logging.Level;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.file.FileConfiguration;
@@ -37,6 +38,12 @@ public class Localisation {
      */
     private final Plugin plugin;
 
+    /**
+     * Compiled messages of the localisation file, with colours added.
+     * Null until first used, replaced as a whole on reload.
+     */
+    private volatile Map<LocalisationEntry, MessageTemplate> messages = null;
+
     /**
      * Initialises plugin variable and localisations.
      *
@@ -57,15 +64,7 @@ public class Localisation {
      *              message belonging to key
      */
     public String get(LocalisationEntry key) {
-        final HashMap<String, Object> localisations = getLocalisations();
-
-        if (localisations.containsKey(key.getName())) {
-            return ColorUtils.addColor(String.valueOf(localisations.get(key.getName())));
-        } else {
-            plugin.getLogger().log(Level.WARNING, ChatColor.RED + "Missing localisation: ''{0}''", key.getName());
-            plugin.getLogger().log(Level.WARNING, "{0}Edit or update your localisation config to resolve", ChatColor.RED);
-            return ColorUtils.addColor(key.getDefaultValue());
-        }
+        return getMessages().get(key).getSource();
     }
 
     /**
@@ -78,23 +77,63 @@ public class Localisation {
      *                          the default message belonging to key
      */
     public String get(LocalisationEntry key, Object... formatObjects) {
-        try {
-            return String.format(get(key), formatObjects);
-        } catch (IllegalFormatException  ex) {
-            plugin.getLogger().log(Level.WARNING, ChatColor.RED + "Error in localisation: ''{0}''", key.getName());
-            plugin.getLogger().log(Level.WARNING, "{0}Edit or update your localisation config to resolve", ChatColor.RED);
-            return ColorUtils.addColor(String.format(key.getDefaultValue(), formatObjects));
+        return getMessages().get(key).render(formatObjects);
+    }
+
+    /**
+     * Reloads the localisation file.
+     * The new messages replace the current ones in one step, so messages
+     * fetched during the reload come either from the old or the new file.
+     */
+    public void reload() {
+        messages = loadMessages();
+    }
+
+    /**
+     * Returns the messages of the localisation file, loading them if they
+     * haven't been loaded yet.
+     *
+     * @return      localisation entry -> compiled message with colours added
+     */
+    private Map<LocalisationEntry, MessageTemplate> getMessages() {
+        Map<LocalisationEntry, MessageTemplate> current = messages;
+        if (current == null) {
+            current = loadMessages();
+            messages = current;
         }
+        return current;
     }
 
     /**
-     * Returns either a custom or default HashMap of localisations.
+     * Parses the localisation file into a map of compiled messages with
+     * colours added.
+     * Missing or invalid entries are replaced by their default value, and
+     * reported once here rather than each time the message is used.
      *
-     * @return  custom HashMap of localisations if one has been provided, else a
-     *          default is returned
+     * @return      localisation entry -> compiled message with colours added
      */
-    private HashMap<String, Object> getLocalisations() {
-        return (HashMap<String, Object>) getConfig().getValues(true);
+    private Map<LocalisationEntry, MessageTemplate> loadMessages() {
+        final FileConfiguration config = getConfig();
+        final Map<LocalisationEntry, MessageTemplate> loaded = new EnumMap<>(LocalisationEntry.class);
+
+        for (LocalisationEntry key : LocalisationEntry.values()) {
+            final Object value = config.get(key.getName());
+            if (value == null) {
+                plugin.getLogger().log(Level.WARNING, ChatColor.RED + "Missing localisation: ''{0}''", key.getName());
+                plugin.getLogger().log(Level.WARNING, "{0}Edit or update your localisation config to resolve", ChatColor.RED);
+                loaded.put(key, MessageTemplate.compile(ColorUtils.addColor(key.getDefaultValue())));
+                continue;
+            }
+
+            try {
+                loaded.put(key, MessageTemplate.compile(ColorUtils.addColor(String.valueOf(value))));
+            } catch (IllegalArgumentException ex) {
+                plugin.getLogger().log(Level.WARNING, ChatColor.RED + "Error in localisation: ''{0}'': {1}", new Object[] {key.getName(), ex.getMessage()});
+                plugin.getLogger().log(Level.WARNING, "{0}Edit or update your localisation config to resolve", ChatColor.RED);
+                loaded.put(key, MessageTemplate.compile(ColorUtils.addColor(key.getDefaultValue())));
+            }
+        }
+        return Collections.unmodifiableMap(loaded);
     }
 
     /**
@@ -587,6 +587,17 @@ public enum LocalisationEntry {
             null,
             "&7Configuration reloaded."),
 
+    /**
+     * Message telling user the WorldGuard regions of the towns are being
+     * rebuilt.
+     * %1$s - number of regions removed
+     * %2$s - number of towns
+     */
+    MSG_REGIONS_REPAIRED (
+            "MsgRegionsRepaired",
+            "%1$s - number of regions removed\n# %2$s - number of towns",
+            "&7Removed %1$s town regions, recreating the regions of %2$s towns."),
+
     /**
      * Message telling user the debug status has been set to a new value.
      * %1$s - debug status
@@ -621,6 +632,14 @@ public enum LocalisationEntry {
             null,
             "Reloads config values"),
 
+    /**
+     * Description for Repair command.
+     */
+    DESCRIPTION_REPAIR (
+            "DescRepair",
+            null,
+            "Rebuilds the WorldGuard regions of all towns"),
+
     /**
      * Description for Debug command.
      */
@@ -725,6 +744,14 @@ public enum LocalisationEntry {
             null,
             "Display information about a town's chunks"),
 
+    /**
+     * Description for Mine command.
+     */
+    DESCRIPTION_MINE (
+            "DescMine",
+            null,
+            "Display the towns you're a member of"),
+
     /**
      * Description for Log command.
      */
@@ -750,6 +777,33 @@ public enum LocalisationEntry {
             null,
             "&7No towns created yet!"),
 
+    /**
+     * Displayed above a list of the towns the player is a leader of in the
+     * Mine command.
+     */
+    MINE_LEADER_HEADER (
+            "MineLeaderHeader",
+            null,
+            "&6Leader of:"),
+
+    /**
+     * Displayed above a list of the towns the player is a citizen of in the
+     * Mine command.
+     */
+    MINE_CITIZEN_HEADER (
+            "MineCitizenHeader",
+            null,
+            "&6Citizen of:"),
+
+    /**
+     * Message displayed to the user if Mine command is performed but they
+     * aren't a member of any town.
+     */
+    MSG_NOT_MEMBER_OF_ANY_TOWN (
+            "MsgNotMemberOfAnyTown",
+            null,
+            "&7You're not a member of any town"),
+
     /**
      * Displayed at the top of the Info command.
      * %1$s - town name
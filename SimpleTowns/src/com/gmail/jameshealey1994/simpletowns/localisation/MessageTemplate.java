@@ -0,0 +1,200 @@
+package com.gmail.jameshealey1994.simpletowns.localisation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Localisation message compiled into literal segments and argument slots.
+ * Supports the subset of the String.format() syntax used by localisation
+ * entries: %s, %d, their explicit index forms (%1$s, %2$d...), %% and %n.
+ * Rendering is a single StringBuilder pass, without regular expressions or a
+ * Formatter.
+ */
+public final class MessageTemplate {
+
+    /**
+     * The message the template was compiled from.
+     */
+    private final String source;
+
+    /**
+     * Literal text around the slots, one more entry than there are slots.
+     */
+    private final String[] literals;
+
+    /**
+     * Index in the format arguments of the value of each slot.
+     */
+    private final int[] argIndexes;
+
+    /**
+     * Conversion of each slot, 's' or 'd'.
+     */
+    private final char[] conversions;
+
+    /**
+     * Original text of each slot, used when the argument is missing.
+     */
+    private final String[] specifiers;
+
+    /**
+     * Total length of the literal text.
+     */
+    private final int literalLength;
+
+    /**
+     * Private constructor, use compile().
+     *
+     * @param source        message the template was compiled from
+     * @param literals      literal text around the slots
+     * @param argIndexes    index in the format arguments of each slot
+     * @param conversions   conversion of each slot
+     * @param specifiers    original text of each slot
+     */
+    private MessageTemplate(String source, String[] literals, int[] argIndexes, char[] conversions, String[] specifiers) {
+        this.source = source;
+        this.literals = literals;
+        this.argIndexes = argIndexes;
+        this.conversions = conversions;
+        this.specifiers = specifiers;
+
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Compiles the passed message.
+     *
+     * @param message   message to compile
+     * @return          compiled message
+     * @throws IllegalArgumentException     if the message contains a format
+     *                                      specifier that isn't supported
+     */
+    public static MessageTemplate compile(String message) {
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> argIndexes = new ArrayList<>();
+        final List<Character> conversions = new ArrayList<>();
+        final List<String> specifiers = new ArrayList<>();
+
+        final StringBuilder literal = new StringBuilder();
+        int ordinaryIndex = 0;
+        int i = 0;
+        while (i < message.length()) {
+            final char c = message.charAt(i);
+            if (c != '%') {
+                literal.append(c);
+                i++;
+                continue;
+            }
+
+            final int start = i++;
+            int explicitIndex = -1;
+
+            // Explicit argument index, "%1$s"
+            int digitsEnd = i;
+            while (digitsEnd < message.length() && Character.isDigit(message.charAt(digitsEnd))) {
+                digitsEnd++;
+            }
+            if (digitsEnd > i && digitsEnd < message.length() && message.charAt(digitsEnd) == '$') {
+                explicitIndex = Integer.parseInt(message.substring(i, digitsEnd)) - 1;
+                if (explicitIndex < 0) {
+                    throw new IllegalArgumentException("Invalid argument index in '" + message.substring(start, digitsEnd + 1) + "'");
+                }
+                i = digitsEnd + 1;
+            }
+
+            if (i >= message.length()) {
+                throw new IllegalArgumentException("Incomplete format specifier at the end of the message");
+            }
+
+            final char conversion = message.charAt(i++);
+            switch (conversion) {
+                case '%': {
+                    if (explicitIndex != -1) {
+                        throw new IllegalArgumentException("Unsupported format specifier '" + message.substring(start, i) + "'");
+                    }
+                    literal.append('%');
+                    break;
+                }
+                case 'n': {
+                    if (explicitIndex != -1) {
+                        throw new IllegalArgumentException("Unsupported format specifier '" + message.substring(start, i) + "'");
+                    }
+                    literal.append(System.lineSeparator());
+                    break;
+                }
+                case 's':
+                case 'd': {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    argIndexes.add(explicitIndex == -1 ? ordinaryIndex++ : explicitIndex);
+                    conversions.add(conversion);
+                    specifiers.add(message.substring(start, i));
+                    break;
+                }
+                default: {
+                    throw new IllegalArgumentException("Unsupported format specifier '" + message.substring(start, i) + "'");
+                }
+            }
+        }
+        literals.add(literal.toString());
+
+        final int slots = argIndexes.size();
+        final int[] argIndexArray = new int[slots];
+        final char[] conversionArray = new char[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            argIndexArray[slot] = argIndexes.get(slot);
+            conversionArray[slot] = conversions.get(slot);
+        }
+        return new MessageTemplate(message,
+                literals.toArray(new String[literals.size()]),
+                argIndexArray,
+                conversionArray,
+                specifiers.toArray(new String[slots]));
+    }
+
+    /**
+     * Returns the message the template was compiled from.
+     *
+     * @return      the message the template was compiled from
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Renders the message with the passed arguments.
+     * A slot without a matching argument is rendered as its specifier.
+     *
+     * @param args      arguments to fill the slots with
+     * @return          rendered message
+     */
+    public String render(Object... args) {
+        if (argIndexes.length == 0) {
+            return literals[0];
+        }
+
+        final StringBuilder builder = new StringBuilder(literalLength + 16 * argIndexes.length);
+        for (int slot = 0; slot < argIndexes.length; slot++) {
+            builder.append(literals[slot]);
+
+            final int index = argIndexes[slot];
+            if (args == null || index >= args.length) {
+                builder.append(specifiers[slot]);
+                continue;
+            }
+
+            final Object arg = args[index];
+            if (conversions[slot] == 'd' && (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte)) {
+                builder.append(((Number) arg).longValue());
+            } else {
+                builder.append(arg);
+            }
+        }
+        builder.append(literals[argIndexes.length]);
+        return builder.toString();
+    }
+}
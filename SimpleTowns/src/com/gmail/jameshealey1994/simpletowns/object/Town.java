@@ -1,7 +1,14 @@
 package com.gmail.jameshealey1994.simpletowns.object;
 
+import com.gmail.jameshealey1994.simpletowns.utils.ChunkIndex;
 import com.gmail.jameshealey1994.simpletowns.utils.ChunksToAreas;
+import com.gmail.jameshealey1994.simpletowns.utils.LongHashSet;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
@@ -31,10 +38,22 @@ public class Town {
     private Set<UUID> citizens = new HashSet<>();
 
     /**
-     * The TownChunks belonging to the Town.
-     * A chunk should only belong to 1 Town at a time.
+     * World id -> Packed coordinates of the chunks belonging to the Town in
+     * this world, or null if the Town never had chunks in this world.
+     * A chunk should only belong to 1 Town at a time. World ids are given by
+     * the WorldRegistry.
      */
-    private Set<TownChunk> chunks = new HashSet<>();
+    private LongHashSet[] chunks = new LongHashSet[0];
+
+    /**
+     * The number of chunks belonging to the Town.
+     */
+    private int chunkCount = 0;
+
+    /**
+     * View of the chunks belonging to the Town as TownChunks.
+     */
+    private final Set<TownChunk> townChunks = new TownChunks();
 
     /**
      * The merging continuous chunks to areas system for the Town.
@@ -54,7 +73,7 @@ public class Town {
     public Town(String name, UUID creator, TownChunk chunk) {
         this.name = name;
         this.leaders.add(creator);
-        this.chunks.add(chunk);
+        addChunk(chunk);
         this.chunksToAreas = new ChunksToAreas(this);
     }
 
@@ -70,7 +89,24 @@ public class Town {
         this.name = name;
         this.leaders = leaders;
         this.citizens = citizens;
-        this.chunks = chunks;
+        for (TownChunk chunk : chunks) {
+            addChunk(chunk);
+        }
+        this.chunksToAreas = new ChunksToAreas(this);
+    }
+
+    /**
+     * Constructor - Initialises all fields, without chunks.
+     * Chunks are added with addChunk.
+     *
+     * @param name          the name of the Town
+     * @param leaders       the leaders of the Town
+     * @param citizens      the citizens of the Town
+     */
+    public Town(String name, Set<UUID> leaders, Set<UUID> citizens) {
+        this.name = name;
+        this.leaders = leaders;
+        this.citizens = citizens;
         this.chunksToAreas = new ChunksToAreas(this);
     }
 
@@ -131,11 +167,13 @@ public class Town {
 
     /**
      * Returns the set of TownChunks belonging to the Town.
+     * The set is a view of the chunks of the Town, TownChunks are created
+     * while iterating. Changes to the set change the chunks of the Town.
      *
      * @return      the set of TownChunks belonging to the Town
      */
     public Set<TownChunk> getTownChunks() {
-        return chunks;
+        return townChunks;
     }
 
     /**
@@ -144,7 +182,164 @@ public class Town {
      * @param chunks        the new set of TownChunks belonging to the Town
      */
     public void setTownChunks(Set<TownChunk> chunks) {
-        this.chunks = chunks;
+        this.chunks = new LongHashSet[0];
+        this.chunkCount = 0;
+        for (TownChunk chunk : chunks) {
+            addChunk(chunk);
+        }
+    }
+
+    /**
+     * Adds a chunk to the Town.
+     *
+     * @param worldId       id of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk wasn't already belonging to the Town
+     */
+    public boolean addChunk(int worldId, int chunkX, int chunkZ) {
+        if (worldId >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, worldId + 1);
+        }
+        if (chunks[worldId] == null) {
+            chunks[worldId] = new LongHashSet();
+        }
+        if (chunks[worldId].add(ChunkIndex.pack(chunkX, chunkZ))) {
+            chunkCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a chunk to the Town.
+     *
+     * @param worldname     name of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk wasn't already belonging to the Town
+     */
+    public boolean addChunk(String worldname, int chunkX, int chunkZ) {
+        return addChunk(WorldRegistry.getId(worldname), chunkX, chunkZ);
+    }
+
+    /**
+     * Adds a chunk to the Town.
+     *
+     * @param chunk         chunk to add
+     * @return              if the chunk wasn't already belonging to the Town
+     */
+    public boolean addChunk(TownChunk chunk) {
+        return addChunk(chunk.getWorldId(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Removes a chunk from the Town.
+     *
+     * @param worldId       id of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk was belonging to the Town
+     */
+    public boolean removeChunk(int worldId, int chunkX, int chunkZ) {
+        final LongHashSet chunksInWorld = getChunksInWorld(worldId);
+        if (chunksInWorld != null && chunksInWorld.remove(ChunkIndex.pack(chunkX, chunkZ))) {
+            chunkCount--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a chunk from the Town.
+     *
+     * @param worldname     name of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk was belonging to the Town
+     */
+    public boolean removeChunk(String worldname, int chunkX, int chunkZ) {
+        return removeChunk(WorldRegistry.findId(worldname), chunkX, chunkZ);
+    }
+
+    /**
+     * Removes a chunk from the Town.
+     *
+     * @param chunk         chunk to remove
+     * @return              if the chunk was belonging to the Town
+     */
+    public boolean removeChunk(TownChunk chunk) {
+        return removeChunk(chunk.getWorldId(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Returns if a chunk belongs to the Town.
+     *
+     * @param worldId       id of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk belongs to the Town
+     */
+    public boolean hasChunk(int worldId, int chunkX, int chunkZ) {
+        final LongHashSet chunksInWorld = getChunksInWorld(worldId);
+        return chunksInWorld != null && chunksInWorld.contains(ChunkIndex.pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Returns if a chunk belongs to the Town.
+     *
+     * @param worldname     name of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              if the chunk belongs to the Town
+     */
+    public boolean hasChunk(String worldname, int chunkX, int chunkZ) {
+        return hasChunk(WorldRegistry.findId(worldname), chunkX, chunkZ);
+    }
+
+    /**
+     * Returns the number of chunks belonging to the Town.
+     *
+     * @return      the number of chunks belonging to the Town
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * Returns the ids of the worlds the Town has, or had, chunks in.
+     *
+     * @return      the ids of the worlds of the chunks of the Town, in
+     *              increasing order
+     */
+    public int[] getChunkWorlds() {
+        int count = 0;
+        for (LongHashSet chunksInWorld : chunks) {
+            if (chunksInWorld != null) {
+                count++;
+            }
+        }
+        final int[] worldIds = new int[count];
+        count = 0;
+        for (int worldId = 0; worldId < chunks.length; worldId++) {
+            if (chunks[worldId] != null) {
+                worldIds[count++] = worldId;
+            }
+        }
+        return worldIds;
+    }
+
+    /**
+     * Returns the packed coordinates of the chunks belonging to the Town in a
+     * world. The returned set must not be changed, use addChunk and
+     * removeChunk instead.
+     *
+     * @param worldId       id of the world
+     * @return              packed coordinates of the chunks in the world, or
+     *                      null if the Town never had chunks in the world
+     */
+    public LongHashSet getChunksInWorld(int worldId) {
+        return worldId >= 0 && worldId < chunks.length ? chunks[worldId] : null;
     }
 
     /**
@@ -173,7 +368,7 @@ public class Town {
         hash = 71 * hash + Objects.hashCode(this.name);
         hash = 71 * hash + Objects.hashCode(this.leaders);
         hash = 71 * hash + Objects.hashCode(this.citizens);
-        hash = 71 * hash + Objects.hashCode(this.chunks);
+        hash = 71 * hash + Objects.hashCode(this.townChunks);
         return hash;
     }
 
@@ -195,9 +390,85 @@ public class Town {
         if (!Objects.equals(this.citizens, other.citizens)) {
             return false;
         }
-        if (!Objects.equals(this.chunks, other.chunks)) {
+        if (!Objects.equals(this.townChunks, other.townChunks)) {
             return false;
         }
         return true;
     }
+
+    /**
+     * View of the chunks of the Town as TownChunks.
+     */
+    private class TownChunks extends AbstractSet<TownChunk> {
+
+        @Override
+        public int size() {
+            return chunkCount;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof TownChunk)) {
+                return false;
+            }
+            final TownChunk chunk = (TownChunk) o;
+            return hasChunk(chunk.getWorldId(), chunk.getX(), chunk.getZ());
+        }
+
+        @Override
+        public boolean add(TownChunk chunk) {
+            return addChunk(chunk);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o instanceof TownChunk && removeChunk((TownChunk) o);
+        }
+
+        @Override
+        public void clear() {
+            chunks = new LongHashSet[0];
+            chunkCount = 0;
+        }
+
+        @Override
+        public Iterator<TownChunk> iterator() {
+            return new Iterator<TownChunk>() {
+                private final LongHashSet[] worlds = chunks;
+                private int worldId = -1;
+                private long[] chunksInWorld = new long[0];
+                private int next = 0;
+                private TownChunk last = null;
+
+                @Override
+                public boolean hasNext() {
+                    while (next >= chunksInWorld.length && worldId + 1 < worlds.length) {
+                        worldId++;
+                        chunksInWorld = worlds[worldId] == null ? new long[0] : worlds[worldId].toArray();
+                        next = 0;
+                    }
+                    return next < chunksInWorld.length;
+                }
+
+                @Override
+                public TownChunk next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    final long packed = chunksInWorld[next++];
+                    last = new TownChunk(ChunkIndex.unpackX(packed), ChunkIndex.unpackZ(packed), worldId);
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    removeChunk(last);
+                    last = null;
+                }
+            };
+        }
+    }
 }
\ No newline at end of file
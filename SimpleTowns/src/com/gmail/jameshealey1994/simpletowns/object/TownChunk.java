@@ -1,5 +1,6 @@
 package com.gmail.jameshealey1994.simpletowns.object;
 
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
 import org.bukkit.Chunk;
 
 /**
@@ -22,41 +23,61 @@ public class TownChunk {
     private final int z;
 
     /**
-     * The name of the world of the TownChunk.
+     * The id of the world of the TownChunk, given by the WorldRegistry.
      */
-    private final String worldname;
+    private final int worldId;
 
     /**
-     * Constructor - Initialises x, z, and worldname.
+     * Constructor - Initialises x, z, and world id.
      *
-     * @param chunk     chunk with x, z and world name values
+     * @param chunk     chunk with x, z and world values
      */
     public TownChunk(Chunk chunk) {
         this.x = chunk.getX();
         this.z = chunk.getZ();
-        this.worldname = chunk.getWorld().getName();
+        this.worldId = WorldRegistry.getId(chunk.getWorld());
     }
 
     /**
-     * Constructor - Initialises x, z, and worldname.
+     * Constructor - Initialises x, z, and world id.
      *
      * @param x             The x coordinate of the TownChunk
      * @param z             The z coordinate of the TownChunk
      * @param worldname     The name of the world of the TownChunk
      */
     public TownChunk(int x, int z, String worldname) {
+        this(x, z, WorldRegistry.getId(worldname));
+    }
+
+    /**
+     * Constructor - Initialises x, z, and world id.
+     *
+     * @param x             The x coordinate of the TownChunk
+     * @param z             The z coordinate of the TownChunk
+     * @param worldId       The id of the world of the TownChunk
+     */
+    public TownChunk(int x, int z, int worldId) {
         this.x = x;
         this.z = z;
-        this.worldname = worldname;
+        this.worldId = worldId;
     }
 
     /**
-     * Get the value of worldname.
+     * Get the current name of the world.
      *
-     * @return the value of worldname
+     * @return the current name of the world
      */
     public String getWorldname() {
-        return worldname;
+        return WorldRegistry.getName(worldId);
+    }
+
+    /**
+     * Get the value of worldId.
+     *
+     * @return      the value of worldId
+     */
+    public int getWorldId() {
+        return worldId;
     }
 
     /**
@@ -79,14 +100,14 @@ public class TownChunk {
 
     /**
      * Compares TownChunk to a passed Chunk.
-     * If the passed object is a Chunk, the worldname, X, and Z of the chunk are
+     * If the passed object is a Chunk, the world, X, and Z of the chunk are
      * all compared.
      *
      * @param c     Chunk being compared
      * @return      If the passed chunk is equal to the current TownChunk object
      */
     public boolean equalsChunk(Chunk c) {
-        return (c.getWorld().getName().equals(getWorldname())
+        return (WorldRegistry.getId(c.getWorld()) == getWorldId()
                 && c.getX() == getX()
                 && c.getZ() == getZ());
     }
@@ -96,7 +117,7 @@ public class TownChunk {
         int hash = 3;
         hash = 29 * hash + this.x;
         hash = 29 * hash + this.z;
-        hash = 29 * hash + this.worldname.hashCode();
+        hash = 29 * hash + this.worldId;
         return hash;
     }
 
@@ -115,7 +136,7 @@ public class TownChunk {
         if (this.z != other.z) {
             return false;
         }
-        if (!this.worldname.equalsIgnoreCase(other.worldname)) {
+        if (this.worldId != other.worldId) {
             return false;
         }
         return true;
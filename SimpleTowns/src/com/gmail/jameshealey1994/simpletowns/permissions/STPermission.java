@@ -47,6 +47,11 @@ public enum STPermission {
      */
     RELOAD ("simpletowns.reload"),
 
+    /**
+     * Permission for RepairCommand.
+     */
+    REPAIR ("simpletowns.repair"),
+
     /**
      * Permission for CreateCommand.
      */
@@ -67,6 +72,11 @@ public enum STPermission {
      */
     LIST ("simpletowns.list"),
 
+    /**
+     * Permission for MineCommand.
+     */
+    MINE ("simpletowns.mine"),
+
     /**
      * Permission used by admins to override.
      */
@@ -0,0 +1,434 @@
+package com.gmail.jameshealey1994.simpletowns.storage;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunkIndex;
+import com.gmail.jameshealey1994.simpletowns.utils.ConfigSaver;
+import com.gmail.jameshealey1994.simpletowns.utils.FileUtils;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Stores each town in its own file, towns/townname.yml, with the same
+ * values as a town of the Towns section of the config.
+ * Changed towns are marked dirty, and only their files are rewritten once
+ * the save delay is over. Towns are serialised on the main thread, and
+ * written in order by a background thread, through a temporary file moved
+ * over the town file.
+ */
+public class ShardedTownStore implements TownStore {
+
+    /**
+     * Name of the directory of the town files.
+     */
+    public static final String DIRECTORY = "towns";
+
+    /**
+     * Extension of the town files.
+     */
+    private static final String EXTENSION = ".yml";
+
+    /**
+     * Plugin storing its towns.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Directory of the town files.
+     */
+    private final File directory;
+
+    /**
+     * Names, in lower case, of the towns changed since the last save.
+     * Towns no longer existing are deleted when saved.
+     */
+    private final Set<String> dirtyTowns = new LinkedHashSet<>();
+
+    /**
+     * Task saving the dirty towns once the save delay is over, or null if
+     * no town is dirty.
+     */
+    private BukkitTask pendingSave = null;
+
+    /**
+     * Thread writing the town files, in order.
+     */
+    private ExecutorService writer = null;
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin storing its towns
+     */
+    public ShardedTownStore(SimpleTowns plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder(), DIRECTORY);
+    }
+
+    @Override
+    public boolean open() {
+        writer = Executors.newSingleThreadExecutor();
+        if (!directory.isDirectory()) {
+            if (!directory.mkdirs()) {
+                plugin.getLogger().log(Level.SEVERE, "Could not create directory {0}", directory);
+                writer.shutdown();
+                writer = null;
+                return false;
+            }
+            importFromConfig();
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) {
+            return;
+        }
+        save();
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                plugin.getLogger().log(Level.SEVERE, "Timed out writing town files");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    @Override
+    public Map<String, Town> loadTowns() {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return new HashMap<>();
+        }
+
+        // Town files are independent, read and parse them in parallel
+        final Map<String, Town> towns = new ConcurrentHashMap<>();
+        final Set<String> inRenamedWorlds = ConcurrentHashMap.newKeySet();
+        Arrays.stream(files).parallel().forEach(file -> {
+            if (!file.getName().endsWith(EXTENSION)) {
+                return;
+            }
+            try {
+                final YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+                final Town town = parseTown(config);
+                towns.put(town.getName().toLowerCase(), town);
+                if (hasRenamedWorld(config)) {
+                    inRenamedWorlds.add(town.getName());
+                }
+            } catch (IllegalArgumentException | NullPointerException ex) {
+                plugin.getLogger().log(Level.WARNING, "{0} getting town from {1}: {2}", new Object[] {ex.getClass().getName(), file.getName(), ex.getMessage()});
+            }
+        });
+
+        // Rewrite towns with chunks stored under the previous name of a renamed world
+        for (String townname : inRenamedWorlds) {
+            markDirty(townname);
+        }
+        return new HashMap<>(towns);
+    }
+
+    @Override
+    public void createTown(String townname, UUID leader, TownChunk chunk) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void deleteTown(String townname) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void renameTown(String oldName, String newName) {
+        markDirty(oldName);
+        markDirty(newName);
+    }
+
+    @Override
+    public void claimChunk(String townname, TownChunk chunk) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void unclaimChunk(String townname, TownChunk chunk) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void addCitizen(String townname, UUID player) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void removeMember(String townname, UUID player) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void promote(String townname, UUID player) {
+        markDirty(townname);
+    }
+
+    @Override
+    public void demote(String townname, UUID player) {
+        markDirty(townname);
+    }
+
+    /**
+     * Marks a town as changed, and schedules a save if none is pending.
+     * The town file is written from the state of the town when saved, so
+     * the town doesn't have to be changed yet.
+     *
+     * @param townname      name of the town
+     */
+    private void markDirty(String townname) {
+        dirtyTowns.add(townname.toLowerCase());
+        if (pendingSave != null) {
+            return; // Saved with the pending save
+        }
+        pendingSave = plugin.getServer().getScheduler().runTaskLater(plugin, new Runnable() {
+            @Override
+            public void run() {
+                pendingSave = null;
+                save();
+            }
+        }, Math.max(0, plugin.getConfig().getLong(ConfigSaver.PATH_SAVE_DELAY, ConfigSaver.DEFAULT_SAVE_DELAY)));
+    }
+
+    /**
+     * Serialises the dirty towns, and writes them in the background.
+     * Files of dirty towns no longer existing are deleted once the files of
+     * the other towns are written, so a renamed town is never missing from
+     * disk. If a town file can't be written, no file is deleted, and the
+     * towns not saved are marked dirty again.
+     */
+    private void save() {
+        if (pendingSave != null) {
+            pendingSave.cancel();
+            pendingSave = null;
+        }
+        if (dirtyTowns.isEmpty()) {
+            return;
+        }
+
+        final Map<String, String> written = new LinkedHashMap<>();
+        final List<String> deleted = new ArrayList<>();
+        Town town;
+        for (String townname : dirtyTowns) {
+            town = plugin.getTown(townname);
+            if (town == null) {
+                deleted.add(townname);
+            } else {
+                written.put(townname, serialiseTown(town));
+            }
+        }
+        dirtyTowns.clear();
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<String> failed = new ArrayList<>();
+                for (Map.Entry<String, String> entry : written.entrySet()) {
+                    if (!write(getFile(entry.getKey()), entry.getValue())) {
+                        failed.add(entry.getKey());
+                    }
+                }
+                if (!failed.isEmpty()) {
+                    if (!deleted.isEmpty()) {
+                        plugin.getLogger().log(Level.WARNING, "Not deleting {0} town files, since a town file could not be saved", deleted.size());
+                    }
+                    failed.addAll(deleted);
+                    markFailed(failed);
+                    return;
+                }
+                for (String townname : deleted) {
+                    getFile(townname).delete();
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks the towns whose files weren't saved as dirty again, on the main
+     * thread, so the next save retries them.
+     *
+     * @param townnames     names of the towns not saved
+     */
+    private void markFailed(final List<String> townnames) {
+        if (!plugin.isEnabled() || writer.isShutdown()) {
+            plugin.getLogger().log(Level.SEVERE, "Towns not saved: {0}", townnames); // Closing, no save follows
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+            @Override
+            public void run() {
+                if (writer == null) {
+                    plugin.getLogger().log(Level.SEVERE, "Towns not saved: {0}", townnames); // Closed since
+                    return;
+                }
+                for (String townname : townnames) {
+                    markDirty(townname);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the values of a town, as stored in its file.
+     *
+     * @param town      town to serialise
+     * @return          serialised town
+     */
+    private static String serialiseTown(Town town) {
+        final YamlConfiguration config = new YamlConfiguration();
+        config.set("Name", town.getName());
+
+        final List<String> leaders = new ArrayList<>();
+        for (UUID leader : town.getLeaders()) {
+            leaders.add(leader.toString());
+        }
+        config.set("Leaders", leaders);
+
+        final List<String> citizens = new ArrayList<>();
+        for (UUID citizen : town.getCitizens()) {
+            citizens.add(citizen.toString());
+        }
+        config.set("Citizens", citizens);
+
+        List<String> chunks;
+        for (int world : town.getChunkWorlds()) {
+            chunks = new ArrayList<>();
+            for (long packed : town.getChunksInWorld(world).toArray()) {
+                chunks.add(ChunkIndex.unpackX(packed) + "," + ChunkIndex.unpackZ(packed));
+            }
+            if (!chunks.isEmpty()) {
+                config.set("Chunks." + WorldRegistry.getName(world), chunks);
+            }
+        }
+        return config.saveToString();
+    }
+
+    /**
+     * Returns the town stored in a town file.
+     *
+     * @param config    values of the town file
+     * @return          town
+     * @throws IllegalArgumentException     if a value is invalid
+     * @throws NullPointerException         if a value is missing
+     */
+    private static Town parseTown(ConfigurationSection config) {
+        final String townname = config.getString("Name");
+        if (townname == null) {
+            throw new NullPointerException("Missing town name");
+        }
+
+        final Set<UUID> leaders = new HashSet<>();
+        for (String leader : config.getStringList("Leaders")) {
+            leaders.add(UUID.fromString(leader));
+        }
+        final Set<UUID> citizens = new HashSet<>();
+        for (String citizen : config.getStringList("Citizens")) {
+            citizens.add(UUID.fromString(citizen));
+        }
+
+        final Town town = new Town(townname, leaders, citizens);
+        final ConfigurationSection chunkWorlds = config.getConfigurationSection("Chunks");
+        if (chunkWorlds != null) {
+            for (String world : chunkWorlds.getKeys(false)) {
+                for (String chunk : chunkWorlds.getStringList(world)) {
+                    final int chunkX = Integer.parseInt(chunk.substring(0, chunk.indexOf(',')));
+                    final int chunkZ = Integer.parseInt(chunk.substring(chunk.indexOf(',') + 1));
+                    town.addChunk(world, chunkX, chunkZ);
+                }
+            }
+        }
+        return town;
+    }
+
+    /**
+     * Returns if a town file has chunks stored under the previous name of a
+     * renamed world.
+     *
+     * @param config    values of the town file
+     * @return          if a world of the chunks was renamed
+     */
+    private static boolean hasRenamedWorld(ConfigurationSection config) {
+        final ConfigurationSection chunkWorlds = config.getConfigurationSection("Chunks");
+        if (chunkWorlds == null) {
+            return false;
+        }
+        for (String world : chunkWorlds.getKeys(false)) {
+            if (!WorldRegistry.getName(WorldRegistry.getId(world)).equals(world)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a town file, through a temporary file moved over it.
+     *
+     * @param file      town file
+     * @param data      serialised town
+     * @return          if the town file was written
+     */
+    private boolean write(File file, String data) {
+        try {
+            FileUtils.writeAtomically(file, data);
+            return true;
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save town to " + file, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a file for each town of the config, including the journal.
+     * The config isn't changed, and is left as a backup.
+     */
+    private void importFromConfig() {
+        final YamlTownStore yamlStore = new YamlTownStore(plugin);
+        yamlStore.open();
+        final Map<String, Town> towns = yamlStore.loadTowns();
+        yamlStore.close();
+
+        for (Town town : towns.values()) {
+            write(getFile(town.getName()), serialiseTown(town));
+        }
+        if (!towns.isEmpty()) {
+            plugin.getLogger().log(Level.INFO, "Imported {0} towns from the config into directory {1}", new Object[] {towns.size(), DIRECTORY});
+        }
+    }
+
+    /**
+     * Returns the file of a town.
+     *
+     * @param townname      name of the town
+     * @return              file of the town
+     */
+    private File getFile(String townname) {
+        return new File(directory, townname.toLowerCase() + EXTENSION);
+    }
+}
@@ -0,0 +1,386 @@
+package com.gmail.jameshealey1994.simpletowns.storage;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import com.gmail.jameshealey1994.simpletowns.utils.ChunkIndex;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Stores the towns in an SQLite database file, with a table for the towns,
+ * one for their members and one for their chunks.
+ * Each change only updates or deletes the few rows it touches. Changes are
+ * written in order by a background thread, so commands don't wait for the
+ * disk.
+ */
+public class SqlTownStore implements TownStore {
+
+    /**
+     * Name of the database file.
+     */
+    public static final String FILENAME = "towns.db";
+
+    /**
+     * Statements creating the tables and their indexes, if they don't exist.
+     */
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS towns (id INTEGER PRIMARY KEY, name TEXT NOT NULL UNIQUE COLLATE NOCASE)",
+        "CREATE TABLE IF NOT EXISTS members (town INTEGER NOT NULL, uuid TEXT NOT NULL, leader INTEGER NOT NULL, PRIMARY KEY (town, uuid))",
+        "CREATE TABLE IF NOT EXISTS chunks (world TEXT NOT NULL, x INTEGER NOT NULL, z INTEGER NOT NULL, town INTEGER NOT NULL, PRIMARY KEY (world, x, z))",
+        "CREATE INDEX IF NOT EXISTS chunks_town ON chunks (town)"
+    };
+
+    /**
+     * Selects the id of the town with the name given as parameter.
+     */
+    private static final String TOWN_ID = "(SELECT id FROM towns WHERE name = ?)";
+
+    /**
+     * Plugin storing its towns.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Connection to the database, or null if the store isn't open.
+     */
+    private Connection connection = null;
+
+    /**
+     * Thread writing the changes, in order.
+     */
+    private ExecutorService writer = null;
+
+    /**
+     * Statements prepared on the connection, only used by the writing
+     * thread.
+     */
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    /**
+     * Statement with its parameters.
+     */
+    private static class Update {
+        private final String sql;
+        private final Object[] parameters;
+
+        private Update(final String sql, final Object... parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin storing its towns
+     */
+    public SqlTownStore(SimpleTowns plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean open() {
+        final File file = new File(plugin.getDataFolder(), FILENAME);
+        try {
+            Class.forName("org.sqlite.JDBC");
+            plugin.getDataFolder().mkdirs();
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode = WAL");
+                statement.execute("PRAGMA synchronous = NORMAL");
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            if (isEmpty()) {
+                importFromConfig();
+            }
+        } catch (ClassNotFoundException | SQLException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open database " + file, ex);
+            closeConnection();
+            return false;
+        }
+        writer = Executors.newSingleThreadExecutor();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                    plugin.getLogger().log(Level.SEVERE, "Timed out writing changes to the database");
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        closeConnection();
+    }
+
+    @Override
+    public Map<String, Town> loadTowns() {
+        final Map<Integer, Town> townsById = new HashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet towns = statement.executeQuery("SELECT id, name FROM towns")) {
+                while (towns.next()) {
+                    townsById.put(towns.getInt(1), new Town(towns.getString(2), new HashSet<UUID>(), new HashSet<UUID>()));
+                }
+            }
+            try (ResultSet members = statement.executeQuery("SELECT town, uuid, leader FROM members")) {
+                Town town;
+                while (members.next()) {
+                    town = townsById.get(members.getInt(1));
+                    if (town != null) {
+                        try {
+                            (members.getBoolean(3) ? town.getLeaders() : town.getCitizens()).add(UUID.fromString(members.getString(2)));
+                        } catch (IllegalArgumentException ex) {
+                            plugin.getLogger().log(Level.WARNING, "Invalid UUID {0} in database", members.getString(2));
+                        }
+                    }
+                }
+            }
+            final Set<String> worlds = new HashSet<>();
+            try (ResultSet townChunks = statement.executeQuery("SELECT world, x, z, town FROM chunks")) {
+                Town town;
+                while (townChunks.next()) {
+                    town = townsById.get(townChunks.getInt(4));
+                    if (town != null) {
+                        town.addChunk(townChunks.getString(1), townChunks.getInt(2), townChunks.getInt(3));
+                        worlds.add(townChunks.getString(1));
+                    }
+                }
+            }
+
+            // Store the chunks of renamed worlds under their current name
+            String currentName;
+            for (String world : worlds) {
+                currentName = WorldRegistry.getName(WorldRegistry.getId(world));
+                if (!currentName.equals(world)) {
+                    plugin.getLogger().log(Level.INFO, "Moving town chunks of renamed world {0} to {1}", new Object[] {world, currentName});
+                    submit(new Update("UPDATE OR REPLACE chunks SET world = ? WHERE world = ?", currentName, world));
+                }
+            }
+        } catch (SQLException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not load towns from database", ex);
+        }
+
+        final Map<String, Town> towns = new HashMap<>();
+        for (Town town : townsById.values()) {
+            towns.put(town.getName().toLowerCase(), town);
+        }
+        return towns;
+    }
+
+    @Override
+    public void createTown(String townname, UUID leader, TownChunk chunk) {
+        submit(new Update("INSERT INTO towns (name) VALUES (?)", townname),
+                new Update("INSERT OR REPLACE INTO members (town, uuid, leader) VALUES (" + TOWN_ID + ", ?, 1)", townname, leader.toString()),
+                new Update("INSERT OR REPLACE INTO chunks (world, x, z, town) VALUES (?, ?, ?, " + TOWN_ID + ")", chunk.getWorldname(), chunk.getX(), chunk.getZ(), townname));
+    }
+
+    @Override
+    public void deleteTown(String townname) {
+        submit(new Update("DELETE FROM members WHERE town = " + TOWN_ID, townname),
+                new Update("DELETE FROM chunks WHERE town = " + TOWN_ID, townname),
+                new Update("DELETE FROM towns WHERE name = ?", townname));
+    }
+
+    @Override
+    public void renameTown(String oldName, String newName) {
+        submit(new Update("UPDATE towns SET name = ? WHERE name = ?", newName, oldName));
+    }
+
+    @Override
+    public void claimChunk(String townname, TownChunk chunk) {
+        submit(new Update("INSERT OR REPLACE INTO chunks (world, x, z, town) VALUES (?, ?, ?, " + TOWN_ID + ")", chunk.getWorldname(), chunk.getX(), chunk.getZ(), townname));
+    }
+
+    @Override
+    public void unclaimChunk(String townname, TownChunk chunk) {
+        submit(new Update("DELETE FROM chunks WHERE world = ? AND x = ? AND z = ?", chunk.getWorldname(), chunk.getX(), chunk.getZ()));
+    }
+
+    @Override
+    public void addCitizen(String townname, UUID player) {
+        submit(new Update("INSERT OR REPLACE INTO members (town, uuid, leader) VALUES (" + TOWN_ID + ", ?, 0)", townname, player.toString()));
+    }
+
+    @Override
+    public void removeMember(String townname, UUID player) {
+        submit(new Update("DELETE FROM members WHERE town = " + TOWN_ID + " AND uuid = ?", townname, player.toString()));
+    }
+
+    @Override
+    public void promote(String townname, UUID player) {
+        submit(new Update("UPDATE members SET leader = 1 WHERE town = " + TOWN_ID + " AND uuid = ?", townname, player.toString()));
+    }
+
+    @Override
+    public void demote(String townname, UUID player) {
+        submit(new Update("UPDATE members SET leader = 0 WHERE town = " + TOWN_ID + " AND uuid = ?", townname, player.toString()));
+    }
+
+    /**
+     * Writes updates in the background, in one transaction.
+     *
+     * @param updates   updates to write
+     */
+    private void submit(final Update... updates) {
+        if (writer == null) {
+            plugin.getLogger().log(Level.SEVERE, "Database is closed, change not saved: {0}", updates[0].sql);
+            return;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    execute(updates);
+                } catch (SQLException ex) {
+                    plugin.getLogger().log(Level.SEVERE, "Could not save change to database: " + updates[0].sql, ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes updates in one transaction.
+     *
+     * @param updates   updates to execute
+     * @throws SQLException     if an update fails, then none are applied
+     */
+    private void execute(Update... updates) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            PreparedStatement statement;
+            for (Update update : updates) {
+                statement = statements.get(update.sql);
+                if (statement == null) {
+                    statement = connection.prepareStatement(update.sql);
+                    statements.put(update.sql, statement);
+                }
+                for (int i = 0; i < update.parameters.length; i++) {
+                    statement.setObject(i + 1, update.parameters[i]);
+                }
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Returns if the database has no town.
+     *
+     * @return      if the database has no town
+     * @throws SQLException     if the database can't be read
+     */
+    private boolean isEmpty() throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet result = statement.executeQuery("SELECT 1 FROM towns LIMIT 1")) {
+            return !result.next();
+        }
+    }
+
+    /**
+     * Copies the towns of the config, including the journal, into the
+     * database. The config isn't changed, and is left as a backup.
+     *
+     * @throws SQLException     if the towns can't be written
+     */
+    private void importFromConfig() throws SQLException {
+        final YamlTownStore yamlStore = new YamlTownStore(plugin);
+        yamlStore.open();
+        final Map<String, Town> towns = yamlStore.loadTowns();
+        yamlStore.close();
+        if (towns.isEmpty()) {
+            return;
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insertTown = connection.prepareStatement("INSERT INTO towns (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement insertMember = connection.prepareStatement("INSERT OR REPLACE INTO members (town, uuid, leader) VALUES (?, ?, ?)");
+                PreparedStatement insertChunk = connection.prepareStatement("INSERT OR REPLACE INTO chunks (world, x, z, town) VALUES (?, ?, ?, ?)")) {
+            int id;
+            for (Town town : towns.values()) {
+                insertTown.setString(1, town.getName());
+                insertTown.executeUpdate();
+                try (ResultSet key = insertTown.getGeneratedKeys()) {
+                    key.next();
+                    id = key.getInt(1);
+                }
+                for (UUID citizen : town.getCitizens()) {
+                    insertMember.setInt(1, id);
+                    insertMember.setString(2, citizen.toString());
+                    insertMember.setInt(3, 0);
+                    insertMember.addBatch();
+                }
+                for (UUID leader : town.getLeaders()) {
+                    insertMember.setInt(1, id);
+                    insertMember.setString(2, leader.toString());
+                    insertMember.setInt(3, 1);
+                    insertMember.addBatch();
+                }
+                for (int world : town.getChunkWorlds()) {
+                    for (long packed : town.getChunksInWorld(world).toArray()) {
+                        insertChunk.setString(1, WorldRegistry.getName(world));
+                        insertChunk.setInt(2, ChunkIndex.unpackX(packed));
+                        insertChunk.setInt(3, ChunkIndex.unpackZ(packed));
+                        insertChunk.setInt(4, id);
+                        insertChunk.addBatch();
+                    }
+                }
+            }
+            insertMember.executeBatch();
+            insertChunk.executeBatch();
+            connection.commit();
+        } catch (SQLException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        plugin.getLogger().log(Level.INFO, "Imported {0} towns from the config into database {1}", new Object[] {towns.size(), FILENAME});
+    }
+
+    /**
+     * Closes the connection to the database and its statements.
+     */
+    private void closeConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+            connection.close();
+        } catch (SQLException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not close database", ex);
+        }
+        connection = null;
+    }
+}
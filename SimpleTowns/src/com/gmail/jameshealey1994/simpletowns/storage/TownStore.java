@@ -0,0 +1,109 @@
+package com.gmail.jameshealey1994.simpletowns.storage;
+
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Storage of the towns.
+ * Commands record each change of a town through the store, which persists
+ * only what the change touches when it can.
+ * Methods have to be called from the main thread.
+ */
+public interface TownStore {
+
+    /**
+     * Opens the store.
+     * Has to be called once the config is loaded, before loading the towns.
+     *
+     * @return      if the store could be opened
+     */
+    boolean open();
+
+    /**
+     * Writes the changes not persisted yet, then closes the store.
+     * Has to be called before the config is reloaded and when the plugin is
+     * disabled.
+     */
+    void close();
+
+    /**
+     * Returns the towns in the store.
+     *
+     * @return      town name in lower case -> town
+     */
+    Map<String, Town> loadTowns();
+
+    /**
+     * Records the creation of a town.
+     *
+     * @param townname      name of the town
+     * @param leader        UUID of the leader of the town
+     * @param chunk         first chunk of the town
+     */
+    void createTown(String townname, UUID leader, TownChunk chunk);
+
+    /**
+     * Records the deletion of a town.
+     *
+     * @param townname      name of the town
+     */
+    void deleteTown(String townname);
+
+    /**
+     * Records the renaming of a town.
+     *
+     * @param oldName       previous name of the town
+     * @param newName       new name of the town
+     */
+    void renameTown(String oldName, String newName);
+
+    /**
+     * Records a chunk claimed by a town.
+     *
+     * @param townname      name of the town
+     * @param chunk         chunk claimed
+     */
+    void claimChunk(String townname, TownChunk chunk);
+
+    /**
+     * Records a chunk unclaimed by a town.
+     *
+     * @param townname      name of the town
+     * @param chunk         chunk unclaimed
+     */
+    void unclaimChunk(String townname, TownChunk chunk);
+
+    /**
+     * Records a citizen added to a town.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the citizen
+     */
+    void addCitizen(String townname, UUID player);
+
+    /**
+     * Records a member, leader or citizen, removed from a town.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the member
+     */
+    void removeMember(String townname, UUID player);
+
+    /**
+     * Records a citizen of a town promoted to leader.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the citizen
+     */
+    void promote(String townname, UUID player);
+
+    /**
+     * Records a leader of a town demoted to citizen.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the leader
+     */
+    void demote(String townname, UUID player);
+}
@@ -0,0 +1,442 @@
+package com.gmail.jameshealey1994.simpletowns.storage;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import com.gmail.jameshealey1994.simpletowns.utils.ConfigUtils;
+import com.gmail.jameshealey1994.simpletowns.utils.ServerUserCache;
+import com.gmail.jameshealey1994.simpletowns.utils.TownJournal;
+import com.gmail.jameshealey1994.simpletowns.utils.WorldRegistry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * Stores the towns in the Towns section of the config.
+ * Changes are saved in the background, or appended to the journal if it is
+ * enabled.
+ */
+public class YamlTownStore implements TownStore {
+
+    /**
+     * The path to the towns in the config.
+     */
+    public static final String PATH = "Towns";
+
+    /**
+     * The path to the marker of the migration of player names to UUIDs in
+     * the config.
+     */
+    public static final String PATH_UUID_MIGRATED = "UUID Migrated";
+
+    /**
+     * Plugin with the config holding the towns.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Journal recording the changes into the config.
+     */
+    private final TownJournal journal;
+
+    /**
+     * Values of a town read from the config, parsed into a town off the main
+     * thread.
+     */
+    private static class TownValues {
+        private final String townname;
+        private final List<String> leaders;
+        private final List<String> citizens;
+        private final Map<String, List<String>> chunks;
+
+        private final List<String> unknownLeaders = new ArrayList<>();
+        private final List<String> unknownCitizens = new ArrayList<>();
+        private Town town = null;
+        private RuntimeException error = null;
+
+        private TownValues(final String townname, final List<String> leaders, final List<String> citizens, final Map<String, List<String>> chunks) {
+            this.townname = townname;
+            this.leaders = leaders;
+            this.citizens = citizens;
+            this.chunks = chunks;
+        }
+
+        /**
+         * Parses the values into a town, keeping the player names which
+         * aren't UUIDs for conversion.
+         */
+        private void parse() {
+            try {
+                final Set<UUID> leaderUUIDs = parseUUIDs(leaders, unknownLeaders);
+                final Set<UUID> citizenUUIDs = parseUUIDs(citizens, unknownCitizens);
+                final Town parsedTown = new Town(townname, leaderUUIDs, citizenUUIDs);
+                for (Map.Entry<String, List<String>> world : chunks.entrySet()) {
+                    for (String chunk : world.getValue()) {
+                        final int chunkX = Integer.parseInt(chunk.substring(0, chunk.indexOf(',')));
+                        final int chunkZ = Integer.parseInt(chunk.substring(chunk.indexOf(',') + 1));
+                        parsedTown.addChunk(world.getKey(), chunkX, chunkZ);
+                    }
+                }
+                town = parsedTown;
+            } catch (NumberFormatException | IndexOutOfBoundsException | NullPointerException ex) {
+                error = ex;
+            }
+        }
+
+        private static Set<UUID> parseUUIDs(List<String> players, List<String> unknownPlayers) {
+            final Set<UUID> playerUUIDs = new HashSet<>();
+            for (String player : players) {
+                try {
+                    playerUUIDs.add(UUID.fromString(player));
+                } catch (IllegalArgumentException e) {
+                    unknownPlayers.add(player);
+                }
+            }
+            return playerUUIDs;
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin with the config holding the towns
+     */
+    public YamlTownStore(SimpleTowns plugin) {
+        this.plugin = plugin;
+        this.journal = new TownJournal(plugin, plugin.getConfigSaver());
+    }
+
+    @Override
+    public boolean open() {
+        journal.open();
+        return true;
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    @Override
+    public Map<String, Town> loadTowns() {
+        final ConfigurationSection townConfigSection = new ConfigUtils(plugin).getConfigSection(PATH);
+
+        // Read the user cache of the server while the towns are parsed, only if player names may be left
+        final boolean migrated = plugin.getConfig().getBoolean(PATH_UUID_MIGRATED, false);
+        final CompletableFuture<Map<String, UUID>> userCache = migrated ? null : CompletableFuture.supplyAsync(new ServerUserCache(plugin)::readUUIDs);
+
+        // Store the chunks of renamed worlds under their current name
+        moveRenamedWorlds(townConfigSection);
+
+        // Read the values on the main thread, the config isn't thread safe
+        final List<TownValues> townValues = new ArrayList<>();
+        for (String townname : townConfigSection.getKeys(false)) {
+            final ConfigurationSection chunkWorlds = townConfigSection.getConfigurationSection(townname + ".Chunks");
+            if (chunkWorlds == null) {
+                plugin.getLogger().log(Level.WARNING, "{0} getting towns from config: {1}", new Object[] {NullPointerException.class.getName(), "No chunks for town " + townname});
+                continue;
+            }
+            final Map<String, List<String>> chunks = new HashMap<>();
+            for (String world : chunkWorlds.getKeys(false)) {
+                chunks.put(world, chunkWorlds.getStringList(world));
+            }
+            townValues.add(new TownValues(townname,
+                    townConfigSection.getStringList(townname + ".Leaders"),
+                    townConfigSection.getStringList(townname + ".Citizens"),
+                    chunks));
+        }
+
+        // Parse the values, in parallel
+        townValues.parallelStream().forEach(TownValues::parse);
+
+        final Map<String, Town> townsFromConfig = new HashMap<>();
+        for (TownValues values : townValues) {
+            if (values.error != null) {
+                plugin.getLogger().log(Level.WARNING, "{0} getting towns from config: {1}", new Object[] {values.error.getClass().getName(), values.error.getMessage()});
+                continue;
+            }
+            townsFromConfig.put(values.townname.toLowerCase(), values.town);
+        }
+
+        // Convert player names left by old versions to UUIDs, once
+        if (!migrated) {
+            migrateNames(townValues, userCache.join());
+        }
+        return townsFromConfig;
+    }
+
+    @Override
+    public void createTown(String townname, UUID leader, TownChunk chunk) {
+        journal.createTown(townname, leader, chunk.getWorldname(), toChunkString(chunk));
+    }
+
+    @Override
+    public void deleteTown(String townname) {
+        journal.deleteTown(townname);
+    }
+
+    @Override
+    public void renameTown(String oldName, String newName) {
+        journal.renameTown(oldName, newName);
+    }
+
+    @Override
+    public void claimChunk(String townname, TownChunk chunk) {
+        journal.claimChunk(townname, chunk.getWorldname(), toChunkString(chunk));
+    }
+
+    @Override
+    public void unclaimChunk(String townname, TownChunk chunk) {
+        journal.unclaimChunk(townname, chunk.getWorldname(), toChunkString(chunk));
+    }
+
+    @Override
+    public void addCitizen(String townname, UUID player) {
+        journal.addCitizen(townname, player);
+    }
+
+    @Override
+    public void removeMember(String townname, UUID player) {
+        journal.removeMember(townname, player);
+    }
+
+    @Override
+    public void promote(String townname, UUID player) {
+        journal.promote(townname, player);
+    }
+
+    @Override
+    public void demote(String townname, UUID player) {
+        journal.demote(townname, player);
+    }
+
+    /**
+     * Converts the player names of all towns to UUIDs, with the user cache
+     * of the server, and saves the conversion once. Names not found in the
+     * user cache are looked up in the background, and the migration marker
+     * is saved once every name is converted.
+     *
+     * @param townValues    values of the towns, with their player names
+     * @param userCache     player name -> UUID of the player
+     */
+    private void migrateNames(List<TownValues> townValues, Map<String, UUID> userCache) {
+        final Map<String, UUID> uuids = new HashMap<>();
+        for (Map.Entry<String, UUID> player : userCache.entrySet()) {
+            uuids.put(player.getKey().toLowerCase(), player.getValue());
+        }
+
+        int converted = 0;
+        final Set<String> notFound = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (TownValues values : townValues) {
+            if (values.error != null) {
+                continue;
+            }
+            converted += convertNames(values.townname, "Leaders", values.unknownLeaders, values.town.getLeaders(), uuids, notFound);
+            converted += convertNames(values.townname, "Citizens", values.unknownCitizens, values.town.getCitizens(), uuids, notFound);
+        }
+
+        if (converted > 0 || !notFound.isEmpty()) {
+            plugin.getLogger().log(Level.INFO, "Converted {0} player names to UUIDs", converted);
+        }
+        if (!notFound.isEmpty()) {
+            plugin.getLogger().log(Level.INFO, "Player names not found in the user cache, looking them up: {0}", notFound);
+            resolveNames(new ArrayList<>(notFound));
+            return;
+        }
+        plugin.getConfig().set(PATH_UUID_MIGRATED, true);
+        plugin.getConfigSaver().markDirty();
+    }
+
+    /**
+     * Looks the UUIDs of player names up in the background, since the
+     * lookup may query Mojang, then converts them on the main thread.
+     *
+     * @param names     player names to look up
+     */
+    private void resolveNames(final List<String> names) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                final Map<String, UUID> uuids = new HashMap<>();
+                OfflinePlayer player;
+                for (String name : names) {
+                    player = plugin.getServer().getOfflinePlayer(name);
+                    if (player != null && player.getUniqueId() != null) {
+                        uuids.put(name.toLowerCase(), player.getUniqueId());
+                    }
+                }
+                if (!plugin.isEnabled()) {
+                    return; // Looked up again on the next start
+                }
+                plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+                    @Override
+                    public void run() {
+                        applyResolvedNames(uuids, names.size());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Converts player names looked up in the background, in the config and
+     * in the loaded towns, and saves the migration marker if every name was
+     * converted. The towns are read again from the config, since they may
+     * have changed during the lookup.
+     *
+     * @param uuids     lower case player name -> UUID of the player
+     * @param total     number of names looked up
+     */
+    private void applyResolvedNames(Map<String, UUID> uuids, int total) {
+        final ConfigurationSection townConfigSection = new ConfigUtils(plugin).getConfigSection(PATH);
+        final boolean otherStore = !(plugin.getTownStore() instanceof YamlTownStore); // Towns imported from the config
+        int converted = 0;
+        final Set<String> notFound = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (String townname : townConfigSection.getKeys(false)) {
+            final Town town = plugin.getTown(townname);
+            for (String key : new String[] {"Leaders", "Citizens"}) {
+                final boolean leader = "Leaders".equals(key);
+                final List<String> players = new ArrayList<>();
+                UUID playerUUID;
+                for (String player : townConfigSection.getStringList(townname + "." + key)) {
+                    if (isUUID(player)) {
+                        players.add(player);
+                        continue;
+                    }
+                    playerUUID = uuids.get(player.toLowerCase());
+                    if (playerUUID == null) {
+                        players.add(player);
+                        notFound.add(player);
+                        continue;
+                    }
+                    players.add(playerUUID.toString());
+                    converted++;
+                    if (town != null && (leader ? town.getLeaders() : town.getCitizens()).add(playerUUID)) {
+                        plugin.getMembershipIndex().put(playerUUID, town, leader);
+                        plugin.getHookSync().membersChanged(town);
+                        if (otherStore) {
+                            plugin.getTownStore().addCitizen(town.getName(), playerUUID);
+                            if (leader) {
+                                plugin.getTownStore().promote(town.getName(), playerUUID);
+                            }
+                        }
+                    }
+                }
+                townConfigSection.set(townname + "." + key, players);
+            }
+        }
+
+        plugin.getLogger().log(Level.INFO, "Converted {0} of {1} player names looked up to UUIDs", new Object[] {converted, total});
+        if (notFound.isEmpty()) {
+            plugin.getConfig().set(PATH_UUID_MIGRATED, true);
+        } else {
+            plugin.getLogger().log(Level.WARNING, "Player names not found, kept as names until the next start: {0}", notFound);
+        }
+        plugin.getConfigSaver().markDirty();
+    }
+
+    /**
+     * Returns if a player of the config is stored by UUID.
+     *
+     * @param player    player as stored in the config
+     * @return          if the player is a UUID
+     */
+    private static boolean isUUID(String player) {
+        try {
+            UUID.fromString(player);
+            return true;
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Moves the chunks stored under the previous name of a renamed world to
+     * its current name, and saves the change once.
+     *
+     * @param townConfigSection     towns section of the config
+     */
+    private void moveRenamedWorlds(ConfigurationSection townConfigSection) {
+        final Set<String> renamed = new TreeSet<>();
+        for (String townname : townConfigSection.getKeys(false)) {
+            final ConfigurationSection chunkWorlds = townConfigSection.getConfigurationSection(townname + ".Chunks");
+            if (chunkWorlds == null) {
+                continue;
+            }
+            for (String world : chunkWorlds.getKeys(false)) {
+                final String currentName = WorldRegistry.getName(WorldRegistry.getId(world));
+                if (currentName.equals(world)) {
+                    continue;
+                }
+                final List<String> chunks = new ArrayList<>(chunkWorlds.getStringList(currentName));
+                chunks.addAll(chunkWorlds.getStringList(world));
+                chunkWorlds.set(currentName, chunks);
+                chunkWorlds.set(world, null);
+                renamed.add(world + " -> " + currentName);
+            }
+        }
+
+        if (!renamed.isEmpty()) {
+            plugin.getLogger().log(Level.INFO, "Moved town chunks of renamed worlds: {0}", renamed);
+            plugin.getConfigSaver().markDirty();
+        }
+    }
+
+    /**
+     * Converts player names of a town to UUIDs, and sets the conversion in
+     * the config. Names that can't be converted are kept.
+     *
+     * @param townname      name of the town
+     * @param key           key of the players in the town, Leaders or Citizens
+     * @param names         player names of the town
+     * @param players       UUIDs of the players of the town, updated
+     * @param uuids         lower case player name -> UUID of the player
+     * @param notFound      names not converted, updated
+     * @return              number of names converted
+     */
+    private int convertNames(String townname, String key, List<String> names, Set<UUID> players, Map<String, UUID> uuids, Set<String> notFound) {
+        if (names.isEmpty()) {
+            return 0;
+        }
+
+        int converted = 0;
+        UUID playerUUID;
+        final ArrayList<String> unknownPlayers = new ArrayList<>();
+        for (String player : names) {
+            playerUUID = uuids.get(player.toLowerCase());
+            if (playerUUID != null) {
+                players.add(playerUUID);
+                converted++;
+            } else {
+                unknownPlayers.add(player);
+                notFound.add(player);
+            }
+        }
+
+        // Save UUID conversion
+        for (UUID player : players) {
+            unknownPlayers.add(player.toString()); // Now contains unconverted to UUID and converted to UUID players
+        }
+        plugin.getConfig().set(PATH + "." + townname + "." + key, unknownPlayers);
+        return converted;
+    }
+
+    /**
+     * Returns the coordinates of a chunk as stored in the config.
+     *
+     * @param chunk     chunk
+     * @return          coordinates of the chunk, as "x,z"
+     */
+    private static String toChunkString(TownChunk chunk) {
+        return chunk.getX() + "," + chunk.getZ();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package containing the classes which store the towns.
+ */
+package com.gmail.jameshealey1994.simpletowns.storage;
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Areas of a Town changed by a claim or an unclaim.
+ * Lets the hooks update the regions and markers of these areas only.
+ */
+public class AreaChanges {
+
+    /**
+     * Areas added or with a new boundary, still in ChunksToAreas.
+     */
+    private final Set<String> updated = new HashSet<>();
+
+    /**
+     * Area name -> World id of the areas no longer in ChunksToAreas.
+     */
+    private final Map<String, Integer> removed = new HashMap<>();
+
+    /**
+     * Marks an area as added or with a new boundary.
+     *
+     * @param areaName      name of the area
+     */
+    void areaUpdated(String areaName) {
+        removed.remove(areaName);
+        updated.add(areaName);
+    }
+
+    /**
+     * Marks an area as removed.
+     *
+     * @param areaName      name of the area
+     * @param world         world id of the area
+     */
+    void areaRemoved(String areaName, int world) {
+        updated.remove(areaName);
+        removed.put(areaName, world);
+    }
+
+    /**
+     * Adds later changes of the same town, the latest change of an area
+     * wins.
+     *
+     * @param changes       later changes
+     */
+    void addAll(AreaChanges changes) {
+        for (Map.Entry<String, Integer> removedArea : changes.removed.entrySet()) {
+            areaRemoved(removedArea.getKey(), removedArea.getValue());
+        }
+        for (String areaName : changes.updated) {
+            areaUpdated(areaName);
+        }
+    }
+
+    /**
+     * Returns the names of the areas added or with a new boundary.
+     *
+     * @return      names of the updated areas
+     */
+    public Set<String> getUpdated() {
+        return Collections.unmodifiableSet(updated);
+    }
+
+    /**
+     * Returns the names and world ids of the removed areas.
+     *
+     * @return      area name -> world id of the removed areas
+     */
+    public Map<String, Integer> getRemoved() {
+        return Collections.unmodifiableMap(removed);
+    }
+
+    /**
+     * Returns if no area changed.
+     *
+     * @return      if no area changed
+     */
+    public boolean isEmpty() {
+        return updated.isEmpty() && removed.isEmpty();
+    }
+}
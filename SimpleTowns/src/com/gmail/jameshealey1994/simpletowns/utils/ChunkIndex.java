@@ -0,0 +1,176 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Index of the Towns owning each claimed chunk.
+ * Chunks are kept per world id in a primitive map keyed by their packed
+ * coordinates, so finding the owner of a chunk doesn't scan every Town.
+ */
+public class ChunkIndex {
+
+    /**
+     * World id -> packed chunk coordinates -> Town owning the chunk, null
+     * for worlds without claimed chunks.
+     */
+    private final ArrayList<LongObjectHashMap<Town>> worlds = new ArrayList<>();
+
+    /**
+     * Packs chunk coordinates into a single long.
+     *
+     * @param chunkX    x coordinate of the chunk
+     * @param chunkZ    z coordinate of the chunk
+     * @return          packed coordinates
+     */
+    public static long pack(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the x coordinate of packed chunk coordinates.
+     *
+     * @param packed    packed coordinates
+     * @return          x coordinate of the chunk
+     */
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * Returns the z coordinate of packed chunk coordinates.
+     *
+     * @param packed    packed coordinates
+     * @return          z coordinate of the chunk
+     */
+    public static int unpackZ(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Returns the Town owning the chunk with the passed coordinates.
+     *
+     * @param worldname     name of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              town owning the chunk, or null, if no town owns it
+     */
+    public Town get(String worldname, int chunkX, int chunkZ) {
+        return get(WorldRegistry.findId(worldname), chunkX, chunkZ);
+    }
+
+    /**
+     * Returns the Town owning the chunk with the passed coordinates.
+     *
+     * @param worldId       id of the world of the chunk
+     * @param chunkX        x coordinate of the chunk
+     * @param chunkZ        z coordinate of the chunk
+     * @return              town owning the chunk, or null, if no town owns it
+     */
+    public Town get(int worldId, int chunkX, int chunkZ) {
+        final LongObjectHashMap<Town> chunks = getChunks(worldId);
+        if (chunks == null) {
+            return null;
+        }
+        return chunks.get(pack(chunkX, chunkZ));
+    }
+
+    /**
+     * Sets the passed Town as owner of the passed chunk.
+     *
+     * @param chunk     chunk claimed by the town
+     * @param town      town owning the chunk
+     */
+    public void put(TownChunk chunk, Town town) {
+        getOrCreateChunks(chunk.getWorldId()).put(pack(chunk.getX(), chunk.getZ()), town);
+    }
+
+    /**
+     * Removes the owner of the passed chunk.
+     *
+     * @param chunk     chunk no longer claimed
+     */
+    public void remove(TownChunk chunk) {
+        final LongObjectHashMap<Town> chunks = getChunks(chunk.getWorldId());
+        if (chunks != null) {
+            chunks.remove(pack(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    /**
+     * Adds all chunks of the passed Town.
+     *
+     * @param town      town to add
+     */
+    public void addTown(Town town) {
+        LongObjectHashMap<Town> chunks;
+        for (int worldId : town.getChunkWorlds()) {
+            chunks = getOrCreateChunks(worldId);
+            for (long packed : town.getChunksInWorld(worldId).toArray()) {
+                chunks.put(packed, town);
+            }
+        }
+    }
+
+    /**
+     * Removes all chunks of the passed Town.
+     *
+     * @param town      town to remove
+     */
+    public void removeTown(Town town) {
+        LongObjectHashMap<Town> chunks;
+        for (int worldId : town.getChunkWorlds()) {
+            chunks = getChunks(worldId);
+            if (chunks == null) {
+                continue;
+            }
+            for (long packed : town.getChunksInWorld(worldId).toArray()) {
+                chunks.remove(packed);
+            }
+        }
+    }
+
+    /**
+     * Clears the index and adds all chunks of the passed Towns.
+     *
+     * @param towns     towns to index
+     */
+    public void rebuild(Collection<Town> towns) {
+        worlds.clear();
+        for (Town town : towns) {
+            addTown(town);
+        }
+    }
+
+    /**
+     * Returns the chunks of a world.
+     *
+     * @param worldId   id of the world
+     * @return          packed chunk coordinates -> Town owning the chunk, or
+     *                  null if no chunk of the world was indexed
+     */
+    private LongObjectHashMap<Town> getChunks(int worldId) {
+        return worldId >= 0 && worldId < worlds.size() ? worlds.get(worldId) : null;
+    }
+
+    /**
+     * Returns the chunks of a world, creating the container of the world if
+     * needed.
+     *
+     * @param worldId   id of the world
+     * @return          packed chunk coordinates -> Town owning the chunk
+     */
+    private LongObjectHashMap<Town> getOrCreateChunks(int worldId) {
+        while (worlds.size() <= worldId) {
+            worlds.add(null);
+        }
+        LongObjectHashMap<Town> chunks = worlds.get(worldId);
+        if (chunks == null) {
+            chunks = new LongObjectHashMap<>();
+            worlds.set(worldId, chunks);
+        }
+        return chunks;
+    }
+}
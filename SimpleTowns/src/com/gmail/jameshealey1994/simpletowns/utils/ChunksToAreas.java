@@ -3,31 +3,78 @@ package com.gmail.jameshealey1994.simpletowns.utils;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
 import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 
 /**
  * Convert the town's chunks to areas.
+ * An area is a group of chunks connected by their sides. Chunks touching
+ * only by a corner are in different areas.
+ * Only the chunks of active worlds, the loaded ones, are merged into areas.
+ * Worlds are identified by their id in the WorldRegistry.
+ * Chunks are read from the town, which has to be changed before the areas.
  */
 public class ChunksToAreas {
 
     /**
      * First container of the output of chunksToAreas().
-     * Area name -> List of points in this area.
+     * Area name -> List of points of the outer boundary of this area.
      */
     public HashMap<String, ArrayList<Point>> areas = new HashMap<>();
 
     /**
      * Second container of the output of chunksToAreas().
-     * Area name -> World name of this area.
+     * Area name -> World id of this area.
      */
-    public HashMap<String, String> areasWorld = new HashMap<>();
+    public HashMap<String, Integer> areasWorld = new HashMap<>();
+
+    /**
+     * Third container of the output of chunksToAreas().
+     * Area name -> Lists of points of the holes (enclaves) of this area.
+     */
+    public HashMap<String, ArrayList<ArrayList<Point>>> areasHoles = new HashMap<>();
+
+    /**
+     * Direction of a boundary edge -> X step.
+     * Directions are +X, +Z, -X, -Z, the order the edges of a chunk are run
+     * through.
+     */
+    private static final int[] STEP_X = {1, 0, -1, 0};
+
+    /**
+     * Direction of a boundary edge -> Z step.
+     */
+    private static final int[] STEP_Z = {0, 1, 0, -1};
 
     /**
      * Current Town.
      */
     private Town town;
 
+    /**
+     * World id -> Packed chunk coordinates -> Area of this chunk, null for
+     * worlds never active.
+     */
+    private final ArrayList<LongObjectHashMap<Area>> areaOfChunk = new ArrayList<>();
+
+    /**
+     * Area name -> Area.
+     */
+    private final HashMap<String, Area> areasByName = new HashMap<>();
+
+    /**
+     * Numbers used in the names of the areas.
+     */
+    private final BitSet areaNumbers = new BitSet();
+
+    /**
+     * Ids of the worlds whose chunks are merged into areas.
+     */
+    private final BitSet activeWorlds = new BitSet();
+
     public ChunksToAreas( Town town ) {
         this.town = town;
         update();
@@ -54,184 +101,706 @@ public class ChunksToAreas {
             }
             return false;
         }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + z;
+        }
+
+        /**
+         * Returns the coordinates of the point packed into a long.
+         */
+        public long pack() {
+            return ChunkIndex.pack(x, z);
+        }
     }
 
     /**
-     * Represents an edge of a chunk in the XZ plan.
-     * This class is only used by the continuous-chunks merging algorithm.
+     * Group of chunks connected by their sides.
      */
-    private class ChunkEdge {
-        public Point p1;
-        public Point p2;
-
-        public ChunkEdge connectedEdgeAtP1 = null;
-        public ChunkEdge connectedEdgeAtP2 = null;
+    private static class Area {
+        private final String name;
+        private final int world;
+        private final int number;
+        private final LongHashSet chunks = new LongHashSet();
 
-        public boolean runThrough = false;
-
-        public ChunkEdge (final Point p1, final Point p2) {
-            this.p1 = p1;
-            this.p2 = p2;
+        private Area(final String name, final int world, final int number) {
+            this.name = name;
+            this.world = world;
+            this.number = number;
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof ChunkEdge) {
-                final ChunkEdge other = (ChunkEdge) obj;
-                return ( p1.equals(other.p1) && p2.equals(other.p2) ||
-                         p2.equals(other.p1) && p1.equals(other.p2) );
-            }
-            return false;
-        }
+    /**
+     * Axis-aligned rectangle of chunks, coordinates are chunk coordinates
+     * and inclusive.
+     */
+    public static class Rectangle {
+        public final int minX;
+        public final int minZ;
+        public final int maxX;
+        public final int maxZ;
 
-        @Override
-        public int hashCode() {
-            return p1.x*p2.x*1000000000 + p1.z*p2.z;
+        public Rectangle(final int minX, final int minZ, final int maxX, final int maxZ) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxZ = maxZ;
         }
     }
 
     /**
      * Merge continuous chunks into areas.
+     * Recomputes every area of the town in the active worlds, numbering them
+     * from 0.
      */
     public void update() {
-        // Init main data containers
-        HashMap<String, HashSet<ChunkEdge>> externalEdgesPerWorld = new HashMap<>();
-        HashSet<ChunkEdge> externalEdgesInWorld;
         areas.clear();
         areasWorld.clear();
+        areasHoles.clear();
+        areaOfChunk.clear();
+        areasByName.clear();
+        areaNumbers.clear();
+
+        // Worlds in id order, so area names don't depend on hash order
+        final AreaChanges changes = new AreaChanges();
+        for (int world = activeWorlds.nextSetBit(0); world >= 0; world = activeWorlds.nextSetBit(world + 1)) {
+            traceWorld(world, changes);
+        }
+    }
+
+    /**
+     * Merges the chunks of the town in a world into areas, once the world
+     * is loaded.
+     *
+     * @param world     world id
+     * @return          areas created, empty if the world was already active
+     */
+    public AreaChanges activateWorld(int world) {
+        final AreaChanges changes = new AreaChanges();
+        if (!activeWorlds.get(world)) {
+            activeWorlds.set(world);
+            traceWorld(world, changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Removes the areas of the town in a world, once the world is unloaded.
+     *
+     * @param world     world id
+     * @return          areas removed, empty if the world wasn't active
+     */
+    public AreaChanges releaseWorld(int world) {
+        final AreaChanges changes = new AreaChanges();
+        if (!activeWorlds.get(world))
+            return changes;
+        activeWorlds.clear(world);
+
+        for (Area area : new ArrayList<>(areasByName.values())) {
+            if (area.world == world)
+                removeArea(area, changes);
+        }
+        final LongObjectHashMap<Area> areasInWorld = findAreasInWorld(world);
+        if (areasInWorld != null)
+            areasInWorld.clear();
+        return changes;
+    }
+
+    /**
+     * Adds a chunk claimed by the town to its areas.
+     * Only the area the chunk touches is traced again, or, if the chunk
+     * joins several areas, the area they are merged into.
+     * The chunk has to be added to the town first.
+     *
+     * @param chunk     chunk claimed by the town
+     * @return          areas changed by the claim
+     */
+    public AreaChanges addChunk(TownChunk chunk) {
+        final AreaChanges changes = new AreaChanges();
+        final int world = chunk.getWorldId();
+        final LongHashSet chunksInWorld = town.getChunksInWorld(world);
+        final long packed = ChunkIndex.pack(chunk.getX(), chunk.getZ());
+        if (chunksInWorld == null || !chunksInWorld.contains(packed))
+            return changes; // Not a chunk of the town
+        if (!activeWorlds.get(world))
+            return activateWorld(world); // Claimed chunks are in loaded worlds
+        final LongObjectHashMap<Area> areasInWorld = getAreasInWorld(world);
+        if (areasInWorld.containsKey(packed))
+            return changes; // Already in an area
+
+        // Areas touching the chunk by a side
+        final ArrayList<Area> touched = new ArrayList<>(4);
+        Area neighbour;
+        for (int direction = 0; direction < 4; direction++) {
+            neighbour = areasInWorld.get(ChunkIndex.pack(chunk.getX() + STEP_X[direction], chunk.getZ() + STEP_Z[direction]));
+            if (neighbour != null && !touched.contains(neighbour))
+                touched.add(neighbour);
+        }
+
+        Area area;
+        if (touched.isEmpty()) {
+            area = newArea(world);
+        } else {
+            // The largest area keeps its name, the others are merged into it
+            area = touched.get(0);
+            for (Area other : touched) {
+                if (other.chunks.size() > area.chunks.size())
+                    area = other;
+            }
+            for (Area other : touched) {
+                if (other == area)
+                    continue;
+                for (long merged : other.chunks.toArray()) {
+                    area.chunks.add(merged);
+                    areasInWorld.put(merged, area);
+                }
+                removeArea(other, changes);
+            }
+        }
+        area.chunks.add(packed);
+        areasInWorld.put(packed, area);
+        traceArea(area, chunksInWorld);
+        changes.areaUpdated(area.name);
+        return changes;
+    }
+
+    /**
+     * Removes a chunk unclaimed by the town from its areas.
+     * Only the area of the chunk is traced again, or, if the area is split,
+     * the areas it is split into.
+     * The chunk has to be removed from the town first.
+     *
+     * @param chunk     chunk unclaimed by the town
+     * @return          areas changed by the unclaim
+     */
+    public AreaChanges removeChunk(TownChunk chunk) {
+        final AreaChanges changes = new AreaChanges();
+        final int world = chunk.getWorldId();
+        final LongObjectHashMap<Area> areasInWorld = findAreasInWorld(world);
+        final long packed = ChunkIndex.pack(chunk.getX(), chunk.getZ());
+        final Area area = areasInWorld == null ? null : areasInWorld.remove(packed);
+        if (area == null)
+            return changes; // Not in an area
+
+        final LongHashSet chunksInWorld = town.getChunksInWorld(world);
+        area.chunks.remove(packed);
+        if (area.chunks.isEmpty()) {
+            removeArea(area, changes);
+            return changes;
+        }
+
+        // Neighbours of the chunk, the area may be split between them
+        final long[] neighbours = new long[4];
+        int neighbourCount = 0;
+        long neighbour;
+        for (int direction = 0; direction < 4; direction++) {
+            neighbour = ChunkIndex.pack(chunk.getX() + STEP_X[direction], chunk.getZ() + STEP_Z[direction]);
+            if (area.chunks.contains(neighbour))
+                neighbours[neighbourCount++] = neighbour;
+        }
+
+        if (neighbourCount > 1) {
+            final LongHashSet visited = new LongHashSet();
+            final ArrayList<long[]> parts = new ArrayList<>(neighbourCount);
+            for (int i = 0; i < neighbourCount; i++) {
+                if (!visited.contains(neighbours[i]))
+                    parts.add(collectComponent(neighbours[i], chunksInWorld, visited));
+            }
+
+            // The largest part keeps the name of the area, the others become new areas
+            int largest = 0;
+            for (int i = 1; i < parts.size(); i++) {
+                if (parts.get(i).length > parts.get(largest).length)
+                    largest = i;
+            }
+            Area part;
+            for (int i = 0; i < parts.size(); i++) {
+                if (i == largest)
+                    continue;
+                part = newArea(world);
+                for (long moved : parts.get(i)) {
+                    area.chunks.remove(moved);
+                    part.chunks.add(moved);
+                    areasInWorld.put(moved, part);
+                }
+                traceArea(part, chunksInWorld);
+                changes.areaUpdated(part.name);
+            }
+        }
+
+        traceArea(area, chunksInWorld);
+        changes.areaUpdated(area.name);
+        return changes;
+    }
+
+    /**
+     * Returns the polygon of an area, ready to be drawn.
+     * The holes of the area are joined to its outer boundary by zero-width
+     * bridges, so the polygon doesn't cover the holes.
+     *
+     * @param areaName      name of the area
+     * @return              points of the polygon, or null if there is no area
+     *                      with this name
+     */
+    public ArrayList<Point> getPolygon(String areaName) {
+        final ArrayList<Point> outer = areas.get(areaName);
+        final ArrayList<ArrayList<Point>> holes = areasHoles.get(areaName);
+        if (outer == null || holes == null || holes.isEmpty())
+            return outer;
+
+        // Join holes from left to right, so each bridge only crosses chunks of the area
+        final ArrayList<ArrayList<Point>> sortedHoles = new ArrayList<>(holes);
+        Collections.sort(sortedHoles, new Comparator<ArrayList<Point>>() {
+            @Override
+            public int compare(ArrayList<Point> hole1, ArrayList<Point> hole2) {
+                final Point left1 = hole1.get(leftmostPoint(hole1));
+                final Point left2 = hole2.get(leftmostPoint(hole2));
+                if (left1.x != left2.x)
+                    return Integer.compare(left1.x, left2.x);
+                return Integer.compare(left1.z, left2.z);
+            }
+        });
+
+        ArrayList<Point> polygon = outer;
+        for (ArrayList<Point> hole : sortedHoles) {
+            polygon = bridgeHole(polygon, hole);
+        }
+        return polygon;
+    }
+
+    /**
+     * Returns the chunks of an area as a few rectangles.
+     * Each rectangle is grown greedily from the first chunk not yet covered,
+     * first along Z, then along X, which gives close to the minimum number
+     * of rectangles for the shapes towns usually have.
+     *
+     * @param areaName      name of the area
+     * @return              rectangles covering exactly the chunks of the
+     *                      area, or null if there is no area with this name
+     */
+    public ArrayList<Rectangle> getRectangles(String areaName) {
+        final Area area = areasByName.get(areaName);
+        if (area == null)
+            return null;
+
+        final long[] sortedChunks = area.chunks.toArray();
+        Arrays.sort(sortedChunks); // By X, then by Z
+        final LongHashSet covered = new LongHashSet();
+        final ArrayList<Rectangle> rectangles = new ArrayList<>();
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
+        long next;
+        boolean columnFree;
+        for (long chunk : sortedChunks) {
+            if (covered.contains(chunk))
+                continue;
+            minX = ChunkIndex.unpackX(chunk);
+            minZ = ChunkIndex.unpackZ(chunk);
+
+            // Grow along Z
+            maxZ = minZ;
+            while (true) {
+                next = ChunkIndex.pack(minX, maxZ + 1);
+                if (!area.chunks.contains(next) || covered.contains(next))
+                    break;
+                maxZ++;
+            }
+
+            // Grow along X, while the whole column is free
+            maxX = minX;
+            while (true) {
+                columnFree = true;
+                for (int z = minZ; z <= maxZ && columnFree; z++) {
+                    next = ChunkIndex.pack(maxX + 1, z);
+                    columnFree = area.chunks.contains(next) && !covered.contains(next);
+                }
+                if (!columnFree)
+                    break;
+                maxX++;
+            }
+
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    covered.add(ChunkIndex.pack(x, z));
+                }
+            }
+            rectangles.add(new Rectangle(minX, minZ, maxX, maxZ));
+        }
+        return rectangles;
+    }
+
+    /**
+     * Stores an area from the boundaries of its chunks.
+     * The outer boundary is the ring with the largest area, the other rings
+     * are holes.
+     *
+     * @param areaName      name of the area
+     * @param world         world id of the area
+     * @param rings         boundaries of the area
+     */
+    private void putArea(String areaName, int world, ArrayList<ArrayList<Point>> rings) {
+        int outerIndex = 0;
+        long outerArea = Long.MIN_VALUE;
+        long ringArea;
+        for (int i = 0; i < rings.size(); i++) {
+            ringArea = signedArea(rings.get(i));
+            if (ringArea > outerArea) {
+                outerArea = ringArea;
+                outerIndex = i;
+            }
+        }
+
+        final ArrayList<ArrayList<Point>> holes = new ArrayList<>(rings.size() - 1);
+        for (int i = 0; i < rings.size(); i++) {
+            if (i != outerIndex)
+                holes.add(rings.get(i));
+        }
+
+        areas.put( areaName, rings.get(outerIndex) );
+        areasWorld.put( areaName, world );
+        areasHoles.put( areaName, holes );
+    }
+
+    /**
+     * Creates one area per group of chunks of the town connected by their
+     * sides in a world, and traces them.
+     *
+     * @param world     world id
+     * @param changes   changes to report the new areas to
+     */
+    private void traceWorld(int world, AreaChanges changes) {
+        final LongHashSet chunksInWorld = town.getChunksInWorld(world);
+        if (chunksInWorld == null)
+            return; // No chunks in this world
+        final LongObjectHashMap<Area> areasInWorld = getAreasInWorld(world);
+        final long[] sortedChunks = chunksInWorld.toArray();
+        Arrays.sort(sortedChunks);
+
+        final LongHashSet visited = new LongHashSet();
+        Area area;
+        for (long chunk : sortedChunks) {
+            if (visited.contains(chunk))
+                continue;
+            area = newArea(world);
+            for (long connected : collectComponent(chunk, chunksInWorld, visited)) {
+                area.chunks.add(connected);
+                areasInWorld.put(connected, area);
+            }
+            traceArea(area, chunksInWorld);
+            changes.areaUpdated(area.name);
+        }
+    }
+
+    /**
+     * Returns the areas of the chunks of the town in a world, creating the
+     * container of the world if needed.
+     *
+     * @param world     world id
+     * @return          packed chunk coordinates -> area of the chunk
+     */
+    private LongObjectHashMap<Area> getAreasInWorld(int world) {
+        while (areaOfChunk.size() <= world)
+            areaOfChunk.add(null);
+        LongObjectHashMap<Area> areasInWorld = areaOfChunk.get(world);
+        if (areasInWorld == null) {
+            areasInWorld = new LongObjectHashMap<>();
+            areaOfChunk.set(world, areasInWorld);
+        }
+        return areasInWorld;
+    }
+
+    /**
+     * Returns the areas of the chunks of the town in a world.
+     *
+     * @param world     world id
+     * @return          packed chunk coordinates -> area of the chunk, or null
+     *                  if the world was never active
+     */
+    private LongObjectHashMap<Area> findAreasInWorld(int world) {
+        return world >= 0 && world < areaOfChunk.size() ? areaOfChunk.get(world) : null;
+    }
+
+    /**
+     * Creates an empty area, named with the lowest free number.
+     *
+     * @param world     world id of the area
+     * @return          new area
+     */
+    private Area newArea(int world) {
+        final int number = areaNumbers.nextClearBit(0);
+        areaNumbers.set(number);
+        final Area area = new Area(town.getName() + "_" + number, world, number);
+        areasByName.put(area.name, area);
+        return area;
+    }
+
+    /**
+     * Removes an area and frees its number.
+     *
+     * @param area      area to remove
+     * @param changes   changes to report the removal to
+     */
+    private void removeArea(Area area, AreaChanges changes) {
+        areas.remove(area.name);
+        areasWorld.remove(area.name);
+        areasHoles.remove(area.name);
+        areasByName.remove(area.name);
+        areaNumbers.clear(area.number);
+        changes.areaRemoved(area.name, area.world);
+    }
+
+    /**
+     * Traces the boundaries of an area and stores them.
+     *
+     * @param area              area to trace
+     * @param chunksInWorld     chunks of the town in the world of the area
+     */
+    private void traceArea(Area area, LongHashSet chunksInWorld) {
+        final long[] sortedChunks = area.chunks.toArray();
+        Arrays.sort(sortedChunks);
+        putArea(area.name, area.world, traceRings(sortedChunks, chunksInWorld));
+    }
+
+    /**
+     * Collects the chunks connected by their sides to a chunk.
+     *
+     * @param start             packed coordinates of the first chunk
+     * @param chunksInWorld     chunks of the town in the same world
+     * @param visited           chunks already collected, updated
+     * @return                  packed coordinates of the connected chunks
+     */
+    private static long[] collectComponent(long start, LongHashSet chunksInWorld, LongHashSet visited) {
+        long[] component = new long[16];
+        int size = 0;
+        long[] stack = new long[16];
+        int top = 0;
+
+        visited.add(start);
+        stack[top++] = start;
+        long chunk;
+        int x;
+        int z;
+        long neighbour;
+        while (top > 0) {
+            chunk = stack[--top];
+            if (size == component.length)
+                component = Arrays.copyOf(component, size * 2);
+            component[size++] = chunk;
 
-        // Get all external edges per world
-        Point p1;
-        Point p2;
-        Point p3;
-        Point p4;
-        ChunkEdge e1;
-        ChunkEdge e2;
-        ChunkEdge e3;
-        ChunkEdge e4;
-        for (TownChunk chunk : town.getTownChunks()) {
-            if (!externalEdgesPerWorld.containsKey(chunk.getWorldname()))
-                externalEdgesPerWorld.put(chunk.getWorldname(), new HashSet<ChunkEdge>());
-
-            p1 = new Point( chunk.getX()*16, chunk.getZ()*16 );
-            p2 = new Point( chunk.getX()*16+16, chunk.getZ()*16 );
-            p3 = new Point( chunk.getX()*16+16, chunk.getZ()*16+16 );
-            p4 = new Point( chunk.getX()*16, chunk.getZ()*16+16 );
-            e1 = new ChunkEdge(p1,p2);
-            e2 = new ChunkEdge(p2,p3);
-            e3 = new ChunkEdge(p3,p4);
-            e4 = new ChunkEdge(p4,p1);
-
-            externalEdgesInWorld = externalEdgesPerWorld.get(chunk.getWorldname());
-
-            // There are two edges if it's an internal edge, so we remove it if we added it once
-            if (!externalEdgesInWorld.add( e1 ))   // add() uses equals() to test if already added, then hashCode()
-                externalEdgesInWorld.remove( e1 ); // remove() uses equals(), then hashCode()
-            if (!externalEdgesInWorld.add( e2 ))
-                externalEdgesInWorld.remove( e2 );
-            if (!externalEdgesInWorld.add( e3 ))
-                externalEdgesInWorld.remove( e3 );
-            if (!externalEdgesInWorld.add( e4 ))
-                externalEdgesInWorld.remove( e4 );
-        }
-
-        // Connect edges between them
-        for (String world : externalEdgesPerWorld.keySet()) {
-            externalEdgesInWorld = externalEdgesPerWorld.get(world);
-            for (ChunkEdge edge1 : externalEdgesInWorld) {
-                if (edge1.connectedEdgeAtP1 != null && edge1.connectedEdgeAtP2 != null )
-                    continue; // We can do this optimization only in one loop, NOT IN BOTH LOOPS
-                for (ChunkEdge edge2 : externalEdgesInWorld) {
-                    if (edge1.equals(edge2))
-                        continue;
-                    if (edge1.p1.equals(edge2.p1)) {
-                        if (edge1.connectedEdgeAtP1 == null && edge2.connectedEdgeAtP1 == null) {
-                            edge1.connectedEdgeAtP1 = edge2;
-                            edge2.connectedEdgeAtP1 = edge1;
-                        }
-                    }
-                    if (edge1.p2.equals(edge2.p2)) {
-                        if (edge1.connectedEdgeAtP2 == null && edge2.connectedEdgeAtP2 == null) {
-                            edge1.connectedEdgeAtP2 = edge2;
-                            edge2.connectedEdgeAtP2 = edge1;
-                        }
-                    }
-                    if (edge1.p1.equals(edge2.p2)) {
-                        if (edge1.connectedEdgeAtP1 == null && edge2.connectedEdgeAtP2 == null) {
-                            edge1.connectedEdgeAtP1 = edge2;
-                            edge2.connectedEdgeAtP2 = edge1;
-                        }
-                    }
-                    if (edge1.p2.equals(edge2.p1)) {
-                        if (edge1.connectedEdgeAtP2 == null && edge2.connectedEdgeAtP1 == null) {
-                            edge1.connectedEdgeAtP2 = edge2;
-                            edge2.connectedEdgeAtP1 = edge1;
-                        }
-                    }
+            x = ChunkIndex.unpackX(chunk);
+            z = ChunkIndex.unpackZ(chunk);
+            for (int direction = 0; direction < 4; direction++) {
+                neighbour = ChunkIndex.pack(x + STEP_X[direction], z + STEP_Z[direction]);
+                if (chunksInWorld.contains(neighbour) && visited.add(neighbour)) {
+                    if (top == stack.length)
+                        stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = neighbour;
                 }
             }
         }
+        return Arrays.copyOf(component, size);
+    }
 
-        // Create areas by running through edges
-        ArrayList<Point> area;
-        String areaName;
-        Integer areaNumber = 0;
-        for (String world : externalEdgesPerWorld.keySet()) {
-            externalEdgesInWorld = externalEdgesPerWorld.get(world);
-            for (ChunkEdge startEdge : externalEdgesInWorld) {
-                if (startEdge.runThrough) continue;
-                area = new ArrayList<Point>();
-                runThroughEdges(startEdge, startEdge, area);
-                areaName = town.getName() + "_" + areaNumber.toString();
-                areas.put( areaName, area );
-                areasWorld.put( areaName, world );
-                areaNumber++;
+    /**
+     * Runs through the boundary edges of a group of connected chunks.
+     * Edges are directed so the chunks are always on the same side, which
+     * gives outer boundaries a positive area and holes a negative area.
+     *
+     * @param component         packed coordinates of the connected chunks
+     * @param chunksInWorld     chunks of the town in the same world
+     * @return                  boundaries of the chunks, aligned points removed
+     */
+    private ArrayList<ArrayList<Point>> traceRings(long[] component, LongHashSet chunksInWorld) {
+        // Boundary edges, as start point and direction
+        final int maxEdges = component.length * 4;
+        final int[] edgeX = new int[maxEdges];
+        final int[] edgeZ = new int[maxEdges];
+        final int[] edgeDirection = new int[maxEdges];
+        int edges = 0;
+
+        int x;
+        int z;
+        for (long chunk : component) {
+            x = ChunkIndex.unpackX(chunk);
+            z = ChunkIndex.unpackZ(chunk);
+            // Corner the edge on this side of the chunk starts from, running +X, +Z, -X, -Z
+            for (int direction = 0; direction < 4; direction++) {
+                // Neighbours in order -Z, +X, +Z, -X
+                if (chunksInWorld.contains(ChunkIndex.pack(x + STEP_Z[direction], z - STEP_X[direction])))
+                    continue; // Internal edge
+                edgeX[edges] = (x + (direction == 1 || direction == 2 ? 1 : 0)) * ChunkUtils.WIDTH;
+                edgeZ[edges] = (z + (direction >= 2 ? 1 : 0)) * ChunkUtils.WIDTH;
+                edgeDirection[edges] = direction;
+                edges++;
+            }
+        }
+
+        // Start point -> edges starting there, two where chunks touch by a corner
+        final LongObjectHashMap<int[]> edgesFrom = new LongObjectHashMap<>();
+        long start;
+        int[] outgoing;
+        for (int edge = 0; edge < edges; edge++) {
+            start = ChunkIndex.pack(edgeX[edge], edgeZ[edge]);
+            outgoing = edgesFrom.get(start);
+            if (outgoing == null) {
+                edgesFrom.put(start, new int[] {edge, -1});
+            } else {
+                outgoing[1] = edge;
             }
         }
 
-        // Remove aligned points
-        ArrayList<Point> toRemove = new ArrayList<>();
-        int i;
+        // Run through the edges, without recursion
+        final boolean[] runThrough = new boolean[edges];
+        final ArrayList<ArrayList<Point>> rings = new ArrayList<>();
+        ArrayList<Point> ring;
+        int current;
+        int direction;
+        for (int first = 0; first < edges; first++) {
+            if (runThrough[first])
+                continue;
+
+            ring = new ArrayList<>();
+            current = first;
+            do {
+                runThrough[current] = true;
+                ring.add(new Point(edgeX[current], edgeZ[current]));
+
+                direction = edgeDirection[current];
+                outgoing = edgesFrom.get(ChunkIndex.pack(
+                        edgeX[current] + STEP_X[direction] * ChunkUtils.WIDTH,
+                        edgeZ[current] + STEP_Z[direction] * ChunkUtils.WIDTH));
+
+                // Where chunks touch by a corner, keep turning around the same chunk
+                if (outgoing[1] != -1 && turn(direction, edgeDirection[outgoing[0]]) < 0)
+                    current = outgoing[1];
+                else
+                    current = outgoing[0];
+            } while (current != first);
+
+            rings.add(removeAlignedPoints(ring));
+        }
+        return rings;
+    }
+
+    /**
+     * Returns the turn from a direction to another.
+     *
+     * @param from      direction of the first edge
+     * @param to        direction of the next edge
+     * @return          1 for the turn at the corners of a chunk, -1 for the
+     *                  opposite turn, 0 if going straight
+     */
+    private static int turn(int from, int to) {
+        return STEP_X[from] * STEP_Z[to] - STEP_Z[from] * STEP_X[to];
+    }
+
+    /**
+     * Returns a ring without the points aligned with the previous and the
+     * next one.
+     *
+     * @param ring      points of the ring
+     * @return          points of the ring, aligned points removed
+     */
+    private static ArrayList<Point> removeAlignedPoints(ArrayList<Point> ring) {
+        final ArrayList<Point> kept = new ArrayList<>(ring.size());
         Point currentPoint;
         Point previousPoint;
         Point nextPoint;
-        for (String nameOfArea : areas.keySet()) {
-            toRemove.clear();
-            area = areas.get(nameOfArea);
+        for (int i = 0; i < ring.size(); i++) {
+            currentPoint = ring.get(i);
+            if (i==0) previousPoint = ring.get(ring.size()-1);
+            else previousPoint = ring.get(i-1);
+            if (i==ring.size()-1) nextPoint = ring.get(0);
+            else nextPoint = ring.get(i+1);
+            if (currentPoint.x == previousPoint.x && currentPoint.x == nextPoint.x || currentPoint.z == previousPoint.z && currentPoint.z == nextPoint.z)
+                continue; // Then point is aligned with the previous and the next one, we can remove it
+            kept.add(currentPoint);
+        }
+        return kept;
+    }
 
-            for (i = 0; i < area.size(); i++) {
-                currentPoint = area.get(i);
-                if (i==0) previousPoint = area.get(area.size()-1);
-                else previousPoint = area.get(i-1);
-                if (i==area.size()-1) nextPoint = area.get(0);
-                else nextPoint = area.get(i+1);
-                if (currentPoint.x == previousPoint.x && currentPoint.x == nextPoint.x || currentPoint.z == previousPoint.z && currentPoint.z == nextPoint.z)
-                    toRemove.add(currentPoint); // Then point is aligned with the previous and the next one, we can remove it
-            }
-            for (Point point : toRemove) {
-                area.remove(point);
-            }
+    /**
+     * Returns twice the signed area of a ring.
+     *
+     * @param ring      points of the ring
+     * @return          positive for an outer boundary, negative for a hole
+     */
+    private static long signedArea(ArrayList<Point> ring) {
+        long area = 0;
+        Point current;
+        Point next;
+        for (int i = 0; i < ring.size(); i++) {
+            current = ring.get(i);
+            next = ring.get((i + 1) % ring.size());
+            area += (long) current.x * next.z - (long) next.x * current.z;
+        }
+        return area;
+    }
+
+    /**
+     * Returns the index of the leftmost point of a ring, the one with the
+     * lowest X, then the lowest Z.
+     *
+     * @param ring      points of the ring
+     * @return          index of the leftmost point
+     */
+    private static int leftmostPoint(ArrayList<Point> ring) {
+        int leftmost = 0;
+        Point point;
+        for (int i = 1; i < ring.size(); i++) {
+            point = ring.get(i);
+            if (point.x < ring.get(leftmost).x || point.x == ring.get(leftmost).x && point.z < ring.get(leftmost).z)
+                leftmost = i;
         }
+        return leftmost;
     }
 
     /**
-     * Recursively run through edges.
+     * Joins a hole to a polygon by a bridge going from the leftmost point of
+     * the hole to the closest edge of the polygon on its left.
+     *
+     * @param polygon   points of the polygon, containing the hole
+     * @param hole      points of the hole
+     * @return          points of the polygon including the hole
      */
-    private void runThroughEdges(ChunkEdge previousEdge, ChunkEdge currentEdge, ArrayList<Point> area) {
-        currentEdge.runThrough = true;
-        
-        // Run through the next edge without going back to the previous
-        if (!currentEdge.connectedEdgeAtP1.equals(previousEdge) ) {
-            area.add(currentEdge.p1);
-            if (currentEdge.connectedEdgeAtP1.runThrough)
-                return;
-            runThroughEdges(currentEdge, currentEdge.connectedEdgeAtP1, area);
+    private ArrayList<Point> bridgeHole(ArrayList<Point> polygon, ArrayList<Point> hole) {
+        final int holeStart = leftmostPoint(hole);
+        final Point holePoint = hole.get(holeStart);
+
+        // Closest edge on the left, edges going -Z have the chunks of the area on their +X side
+        int bridgeEdge = -1;
+        int bridgeX = Integer.MIN_VALUE;
+        Point a;
+        Point b;
+        for (int i = 0; i < polygon.size(); i++) {
+            a = polygon.get(i);
+            b = polygon.get((i + 1) % polygon.size());
+            if (a.x == b.x && a.z > b.z && a.x < holePoint.x && b.z <= holePoint.z && holePoint.z <= a.z && a.x > bridgeX) {
+                bridgeEdge = i;
+                bridgeX = a.x;
+            }
+        }
+        if (bridgeEdge == -1)
+            return polygon; // Not inside the polygon
+
+        final Point bridgePoint = new Point(bridgeX, holePoint.z);
+        final ArrayList<Point> joined = new ArrayList<>(polygon.size() + hole.size() + 3);
+        for (int i = 0; i <= bridgeEdge; i++) {
+            joined.add(polygon.get(i));
+        }
+        if (!bridgePoint.equals(polygon.get(bridgeEdge)))
+            joined.add(bridgePoint);
+        for (int i = 0; i <= hole.size(); i++) {
+            joined.add(hole.get((holeStart + i) % hole.size())); // Back to the first point of the hole
         }
-        else if (!currentEdge.connectedEdgeAtP2.equals(previousEdge) ) {
-            area.add(currentEdge.p2);
-            if (currentEdge.connectedEdgeAtP2.runThrough)
-                return;
-            runThroughEdges(currentEdge, currentEdge.connectedEdgeAtP2, area);
+        if (!bridgePoint.equals(polygon.get((bridgeEdge + 1) % polygon.size())))
+            joined.add(bridgePoint);
+        for (int i = bridgeEdge + 1; i < polygon.size(); i++) {
+            joined.add(polygon.get(i));
         }
+        return joined;
     }
-}
\ No newline at end of file
+}
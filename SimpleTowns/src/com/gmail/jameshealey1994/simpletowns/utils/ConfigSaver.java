@@ -0,0 +1,170 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Saves the config of a plugin in the background.
+ * Changes are marked dirty, and the config is saved once the save delay is
+ * over, so bursts of changes are written once. The config is serialised on
+ * the main thread, so the snapshot is consistent, and written to disk on
+ * another thread, through a temporary file moved over the config file.
+ */
+public class ConfigSaver {
+
+    /**
+     * The path to the save delay value in the config, in ticks.
+     */
+    public static final String PATH_SAVE_DELAY = "Save Delay";
+
+    /**
+     * The default save delay, used if no other values are found.
+     */
+    public static final long DEFAULT_SAVE_DELAY = 40;
+
+    /**
+     * Name of the config file of the plugin.
+     */
+    private static final String FILENAME = "config.yml";
+
+    /**
+     * Plugin with the config to save.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Task saving the config once the save delay is over, or null if the
+     * config isn't dirty.
+     */
+    private BukkitTask pendingSave = null;
+
+    /**
+     * Number of the last snapshot taken.
+     */
+    private long snapshotNumber = 0;
+
+    /**
+     * Number of the last snapshot written, guarded by the instance lock so
+     * an older snapshot is never written over a newer one.
+     */
+    private long writtenNumber = 0;
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin with the config to save
+     */
+    public ConfigSaver(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Marks the config as changed, and schedules a save if none is pending.
+     * Has to be called from the main thread.
+     */
+    public void markDirty() {
+        if (pendingSave != null) {
+            return; // Saved with the pending save
+        }
+        pendingSave = plugin.getServer().getScheduler().runTaskLater(plugin, new Runnable() {
+            @Override
+            public void run() {
+                pendingSave = null;
+                final String data = plugin.getConfig().saveToString();
+                final long number = ++snapshotNumber;
+                plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+                    @Override
+                    public void run() {
+                        write(data, number);
+                    }
+                });
+            }
+        }, Math.max(0, plugin.getConfig().getLong(PATH_SAVE_DELAY, DEFAULT_SAVE_DELAY)));
+    }
+
+    /**
+     * Saves the config now if it is dirty or a snapshot is still being
+     * written, waiting for the write.
+     * Has to be called from the main thread, before the config is reloaded
+     * and when the plugin is disabled.
+     */
+    public void flush() {
+        if (pendingSave != null || !isWritten()) {
+            writeNow(); // Waits for the write in progress, then writes over it
+        }
+    }
+
+    /**
+     * Returns if the last snapshot taken was written.
+     *
+     * @return      if no snapshot is waiting to be written
+     */
+    private synchronized boolean isWritten() {
+        return writtenNumber >= snapshotNumber;
+    }
+
+    /**
+     * Saves the config now, waiting for the write.
+     * Has to be called from the main thread.
+     *
+     * @return      if the config was written
+     */
+    public boolean writeNow() {
+        if (pendingSave != null) {
+            pendingSave.cancel();
+            pendingSave = null;
+        }
+        return write(plugin.getConfig().saveToString(), ++snapshotNumber);
+    }
+
+    /**
+     * Saves the config now, writing it in the background.
+     * Has to be called from the main thread.
+     *
+     * @param afterWrite    run on the writing thread once the config is
+     *                      written, not run if the write fails
+     */
+    public void saveNow(final Runnable afterWrite) {
+        if (pendingSave != null) {
+            pendingSave.cancel();
+            pendingSave = null;
+        }
+        final String data = plugin.getConfig().saveToString();
+        final long number = ++snapshotNumber;
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                if (write(data, number)) {
+                    afterWrite.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot of the config to disk, unless a newer one is already
+     * written.
+     *
+     * @param data      serialised config
+     * @param number    number of the snapshot
+     * @return          if the snapshot, or a newer one, is written
+     */
+    private synchronized boolean write(String data, long number) {
+        if (number <= writtenNumber) {
+            return true;
+        }
+
+        final File file = new File(plugin.getDataFolder(), FILENAME);
+        try {
+            FileUtils.writeAtomically(file, data);
+            writtenNumber = number;
+            return true;
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save config to " + file, ex);
+            return false;
+        }
+    }
+}
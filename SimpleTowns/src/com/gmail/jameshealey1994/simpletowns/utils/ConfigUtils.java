@@ -1,8 +1,8 @@
 package com.gmail.jameshealey1994.simpletowns.utils;
 
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 import java.util.logging.Level;
 import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.plugin.Plugin;
 
 /**
  * Utility methods that interact with a configuration file for values.
@@ -14,14 +14,14 @@ public class ConfigUtils {
     /**
      * Plugin with a configuration.
      */
-    private final Plugin plugin;
+    private final SimpleTowns plugin;
 
     /**
      * Constructor - Sets plugin with config.
      *
      * @param plugin    plugin with a configuration
      */
-    public ConfigUtils(Plugin plugin) {
+    public ConfigUtils(SimpleTowns plugin) {
         this.plugin = plugin;
     }
 
@@ -45,7 +45,8 @@ public class ConfigUtils {
     /**
      * Creates an empty ConfigurationSection
      * at the passed path in the config of the plugin.
-     * The config is then saved, and the empty ConfigurationSection returned.
+     * The config is then marked to be saved, and the empty
+     * ConfigurationSection returned.
      *
      * Any value that was previously set at this path will be overwritten.
      * If the previous value was itself a ConfigurationSection,
@@ -57,7 +58,7 @@ public class ConfigUtils {
     public ConfigurationSection createEmptyConfigSection(String path) {
         plugin.getLogger().log(Level.INFO, "Config section ''{0}'' not found. Creating...", path);
         final ConfigurationSection emptyConfigSection = plugin.getConfig().createSection(path);
-        plugin.saveConfig();
+        plugin.getConfigSaver().markDirty();
         plugin.getLogger().log(Level.INFO, "Config section ''{0}'' created", path);
         return emptyConfigSection;
     }
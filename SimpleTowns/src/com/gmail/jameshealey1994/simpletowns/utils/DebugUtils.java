@@ -1,6 +1,6 @@
 package com.gmail.jameshealey1994.simpletowns.utils;
 
-import org.bukkit.plugin.Plugin;
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 
 /**
  * Utility methods that interact with a configuration file for debug values.
@@ -22,14 +22,14 @@ public class DebugUtils {
     /**
      * Plugin with associated config file.
      */
-    private final Plugin plugin;
+    private final SimpleTowns plugin;
 
     /**
      * Constructor - Sets plugin.
      *
      * @param plugin    plugin with associated config file
      */
-    public DebugUtils(Plugin plugin) {
+    public DebugUtils(SimpleTowns plugin) {
         this.plugin = plugin;
     }
 
@@ -43,12 +43,12 @@ public class DebugUtils {
     }
 
     /**
-     * Sets the debug mode for the plugin, then saves the config file.
+     * Sets the debug mode for the plugin, then marks the config to be saved.
      *
      * @param status    new status
      */
     public void setEnabled(boolean status) {
         plugin.getConfig().set(PATH_DEBUG, status);
-        plugin.saveConfig();
+        plugin.getConfigSaver().markDirty();
     }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Utility class for files.
+ */
+public abstract class FileUtils {
+
+    /**
+     * Added to the name of a file, for the temporary file written before it.
+     */
+    public static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /**
+     * Writes a file through a temporary file in the same directory, moved
+     * over it, so the file is either the previous one or the new one, never
+     * partly written.
+     *
+     * @param file      file to write
+     * @param data      content of the file
+     * @throws IOException      if the file can't be written
+     */
+    public static void writeAtomically(File file, String data) throws IOException {
+        final File temporaryFile = new File(file.getPath() + TEMPORARY_SUFFIX);
+        final File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temporaryFile.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(data);
+        }
+        try {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
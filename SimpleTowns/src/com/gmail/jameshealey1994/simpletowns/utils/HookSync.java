@@ -0,0 +1,326 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Brings the Dynmap markers and WorldGuard regions of changed towns up to
+ * date, once per tick.
+ *
+ * Changes to a town update its areas, which is cheap, and mark the town
+ * dirty. After the delay, dirty towns are synchronised each tick until the
+ * time allowed per tick is used: the hooks are updated once for all the
+ * areas changed by the claims, unclaims, renames and member changes of a
+ * town since its last synchronisation. The hooks aren't thread safe, so
+ * this is done on the main thread.
+ */
+public class HookSync implements Runnable {
+
+    /**
+     * The string for the value in the config this class is interacting with.
+     */
+    public static final String CONFIG_STRING = "Hook Sync";
+
+    /**
+     * The default number of ticks before dirty towns are synchronised, used
+     * if no other values are found.
+     */
+    public static final int DEFAULT_DELAY = 1;
+
+    /**
+     * The default time allowed to synchronise towns each tick, in
+     * milliseconds, used if no other values are found.
+     */
+    public static final int DEFAULT_MILLISECONDS_PER_TICK = 5;
+
+    /**
+     * Plugin with the hooks.
+     */
+    private final SimpleTowns plugin;
+
+    /**
+     * Dirty town -> Changes not synchronised yet. Towns are compared by
+     * identity, Town.hashCode() changes with the chunks.
+     */
+    private final IdentityHashMap<Town, DirtyTown> dirtyTowns = new IdentityHashMap<>();
+
+    /**
+     * Dirty towns, in the order they were marked.
+     */
+    private final ArrayDeque<DirtyTown> queue = new ArrayDeque<>();
+
+    /**
+     * Task synchronising the dirty towns each tick, or null if no town is
+     * dirty.
+     */
+    private BukkitTask task = null;
+
+    /**
+     * Changes of a town not synchronised yet.
+     */
+    private static class DirtyTown {
+        private final Town town;
+        private final AreaChanges changes = new AreaChanges();
+        private boolean register = false;
+        private boolean members = false;
+        private String oldName = null;
+
+        private DirtyTown(final Town town) {
+            this.town = town;
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin with the hooks
+     */
+    public HookSync(SimpleTowns plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Marks towns to be added to the hooks again, after a reload or a
+     * repair. Other changes are dropped, except the renames of the same
+     * towns, since Dynmap knows them by their old name.
+     *
+     * @param towns     towns to add
+     */
+    public void registerTowns(Collection<Town> towns) {
+        final IdentityHashMap<Town, DirtyTown> previous = new IdentityHashMap<>(dirtyTowns);
+        cancel();
+        DirtyTown dirtyTown;
+        for (Town town : towns) {
+            dirtyTown = markDirty(town);
+            dirtyTown.register = true;
+            if (previous.containsKey(town)) {
+                dirtyTown.oldName = previous.get(town).oldName;
+            }
+        }
+        start();
+    }
+
+    /**
+     * Marks a created town to be added to the hooks.
+     *
+     * @param town      created town
+     */
+    public void createTown(Town town) {
+        markDirty(town).register = true;
+    }
+
+    /**
+     * Updates the areas of a town for a claimed chunk, already added to the
+     * town.
+     *
+     * @param town      town claiming the chunk
+     * @param chunk     chunk claimed
+     */
+    public void claimChunk(Town town, TownChunk chunk) {
+        areasChanged(town, town.getChunksToAreas().addChunk(chunk));
+    }
+
+    /**
+     * Updates the areas of a town for an unclaimed chunk, already removed
+     * from the town.
+     *
+     * @param town      town unclaiming the chunk
+     * @param chunk     chunk unclaimed
+     */
+    public void unclaimChunk(Town town, TownChunk chunk) {
+        areasChanged(town, town.getChunksToAreas().removeChunk(chunk));
+    }
+
+    /**
+     * Marks areas of a town already changed, by a claim, an unclaim, or the
+     * load or unload of a world.
+     *
+     * @param town      town whose areas changed
+     * @param changes   areas changed
+     */
+    public void areasChanged(Town town, AreaChanges changes) {
+        if (!changes.isEmpty()) {
+            markDirty(town).changes.addAll(changes);
+        }
+    }
+
+    /**
+     * Merges the areas of a renamed town again, since they are named after
+     * the town, and marks the town dirty.
+     *
+     * @param town      renamed town, already renamed
+     * @param oldName   name of the town before the rename
+     */
+    public void renameTown(Town town, String oldName) {
+        final DirtyTown dirtyTown = markDirty(town);
+        if (dirtyTown.oldName == null) {
+            dirtyTown.oldName = oldName; // Name the hooks know the town by
+        }
+
+        final ChunksToAreas chunksToAreas = town.getChunksToAreas();
+        for (Map.Entry<String, Integer> area : chunksToAreas.areasWorld.entrySet()) {
+            dirtyTown.changes.areaRemoved(area.getKey(), area.getValue());
+        }
+        chunksToAreas.update();
+        for (String area : chunksToAreas.areas.keySet()) {
+            dirtyTown.changes.areaUpdated(area);
+        }
+    }
+
+    /**
+     * Marks a town whose leaders or citizens changed.
+     *
+     * @param town      town whose members changed
+     */
+    public void membersChanged(Town town) {
+        markDirty(town).members = true;
+    }
+
+    /**
+     * Removes a deleted town from the hooks now. Its changes not
+     * synchronised yet are synchronised first, so the hooks know all the
+     * markers and regions to remove.
+     *
+     * @param town      deleted town
+     */
+    public void deleteTown(Town town) {
+        syncTown(town);
+
+        try {
+            plugin.getDynmapHook().removeTownFromMarkerset(town);
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "{0} removing town areas {1} from Dynmap: {2}", new Object[] {ex.getClass().getName(), town.getName(), ex.getMessage()});
+        }
+        try {
+            plugin.getWorldGuardHook().removeTownRegions(town);
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "{0} removing town areas {1} from WorldGuard: {2}", new Object[] {ex.getClass().getName(), town.getName(), ex.getMessage()});
+        }
+    }
+
+    /**
+     * Synchronises a town now, if it is dirty.
+     *
+     * @param town      town to synchronise
+     */
+    public void syncTown(Town town) {
+        final DirtyTown dirtyTown = dirtyTowns.remove(town);
+        if (dirtyTown != null) {
+            queue.remove(dirtyTown);
+            sync(dirtyTown);
+        }
+    }
+
+    /**
+     * Starts the task after the delay, if not running. The hooks finish
+     * their work, like a reconciliation, once the queue is empty, so the
+     * task runs even without dirty towns.
+     */
+    public void start() {
+        if (task == null) {
+            final long delay = Math.max(1, plugin.getConfig().getInt(CONFIG_STRING + ".Delay", DEFAULT_DELAY));
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, delay, 1);
+        }
+    }
+
+    /**
+     * Drops the changes not synchronised yet, and stops the task.
+     */
+    public void cancel() {
+        dirtyTowns.clear();
+        queue.clear();
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        final long maximumTime = TimeUnit.MILLISECONDS.toNanos(Math.max(1, plugin.getConfig().getInt(CONFIG_STRING + ".Milliseconds Per Tick", DEFAULT_MILLISECONDS_PER_TICK)));
+        final long start = System.nanoTime();
+        DirtyTown dirtyTown;
+        do {
+            dirtyTown = queue.poll();
+            if (dirtyTown == null) {
+                break;
+            }
+            dirtyTowns.remove(dirtyTown.town);
+            if (plugin.getTown(dirtyTown.town.getName()) == dirtyTown.town) {
+                sync(dirtyTown);
+            }
+        } while (System.nanoTime() - start < maximumTime); // At least one town each tick
+
+        if (queue.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+            plugin.getWorldGuardHook().finishReconciliation(); // Once all the towns are added
+            plugin.getWorldGuardHook().saveRegionRegistry();
+        }
+    }
+
+    /**
+     * Returns the changes not synchronised yet of a town, marking it dirty
+     * and starting the task if needed.
+     *
+     * @param town      changed town
+     * @return          changes of the town
+     */
+    private DirtyTown markDirty(Town town) {
+        DirtyTown dirtyTown = dirtyTowns.get(town);
+        if (dirtyTown == null) {
+            dirtyTown = new DirtyTown(town);
+            dirtyTowns.put(town, dirtyTown);
+            queue.add(dirtyTown);
+        }
+        start();
+        return dirtyTown;
+    }
+
+    /**
+     * Updates the markers and regions of a dirty town.
+     *
+     * @param dirtyTown     changes of the town
+     */
+    private void sync(DirtyTown dirtyTown) {
+        final Town town = dirtyTown.town;
+
+        // Update our Dynmap markerset
+        try {
+            if (dirtyTown.oldName != null) {
+                plugin.getDynmapHook().renameTown(town, dirtyTown.oldName);
+            } else if (dirtyTown.register) {
+                plugin.getDynmapHook().addTownToMarkerset(town);
+            } else {
+                plugin.getDynmapHook().updateTownMarkers(town, dirtyTown.changes);
+            }
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "{0} updating town areas {1} on Dynmap: {2}", new Object[] {ex.getClass().getName(), town.getName(), ex.getMessage()});
+        }
+
+        // Update WorldGuard regions, new regions get the current members
+        try {
+            if (dirtyTown.oldName != null) {
+                plugin.getWorldGuardHook().removeParentRegions(dirtyTown.oldName); // Named after the town
+            }
+            if (dirtyTown.register) {
+                plugin.getWorldGuardHook().addTownRegions(town);
+            } else {
+                plugin.getWorldGuardHook().updateTownRegions(town, dirtyTown.changes);
+                if (dirtyTown.members) {
+                    plugin.getWorldGuardHook().updateTownMembers(town);
+                }
+            }
+        } catch (Exception ex) {
+            plugin.getLogger().log(Level.WARNING, "{0} updating town areas {1} on WorldGuard: {2}", new Object[] {ex.getClass().getName(), town.getName(), ex.getMessage()});
+        }
+    }
+}
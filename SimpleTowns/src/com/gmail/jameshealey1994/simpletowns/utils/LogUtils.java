@@ -1,5 +1,6 @@
 package com.gmail.jameshealey1994.simpletowns.utils;
 
+import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.Plugin;
 
@@ -38,15 +39,15 @@ public abstract class LogUtils {
     }
 
     /**
-     * Sets the logging mode for the plugin, then saves the config file.
+     * Sets the logging mode for the plugin, then marks the config to be saved.
      *
      * @param sender        sender of the status
      * @param status        new status
      * @param plugin        plugin with associated config file
      */
-    public static void setEnabled(CommandSender sender, boolean status, Plugin plugin) {
+    public static void setEnabled(CommandSender sender, boolean status, SimpleTowns plugin) {
         plugin.getConfig().set(CONFIG_STRING + ".Enabled", status);
-        plugin.saveConfig();
+        plugin.getConfigSaver().markDirty();
     }
 
     /**
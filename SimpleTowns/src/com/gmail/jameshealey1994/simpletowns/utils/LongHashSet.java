@@ -0,0 +1,201 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash set of primitive longs.
+ * Uses open addressing with linear probing, like LongObjectHashMap, so
+ * neither lookups nor updates box the values or allocate entry objects.
+ */
+public class LongHashSet {
+
+    /**
+     * The default number of slots, must be a power of two.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The values of the set.
+     */
+    private long[] values;
+
+    /**
+     * If each slot holds a value.
+     */
+    private boolean[] used;
+
+    /**
+     * The number of values in the set.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor - Initialises an empty set.
+     */
+    public LongHashSet() {
+        this.values = new long[DEFAULT_CAPACITY];
+        this.used = new boolean[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns if the set contains the passed value.
+     *
+     * @param value     value to check
+     * @return          if the set contains the value
+     */
+    public boolean contains(long value) {
+        final int mask = values.length - 1;
+        int i = mix(value) & mask;
+        while (used[i]) {
+            if (values[i] == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the passed value to the set.
+     *
+     * @param value     value to add
+     * @return          if the value was not already in the set
+     */
+    public boolean add(long value) {
+        final int mask = values.length - 1;
+        int i = mix(value) & mask;
+        while (used[i]) {
+            if (values[i] == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        values[i] = value;
+        used[i] = true;
+        if (++size > (values.length >> 1) + (values.length >> 2)) {
+            resize(values.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the passed value from the set.
+     *
+     * @param value     value to remove
+     * @return          if the value was in the set
+     */
+    public boolean remove(long value) {
+        final int mask = values.length - 1;
+        int i = mix(value) & mask;
+        while (used[i]) {
+            if (values[i] == value) {
+                shiftBack(i);
+                size--;
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return      number of values in the set
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns if the set has no values.
+     *
+     * @return      if the set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values from the set.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Returns the values of the set, in no particular order.
+     *
+     * @return      new array with the values of the set
+     */
+    public long[] toArray() {
+        final long[] array = new long[size];
+        int j = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (used[i]) {
+                array[j++] = values[i];
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Closes the gap left by a removed value, moving back the following
+     * values of the probe sequence so lookups never stop early.
+     *
+     * @param gap   slot of the removed value
+     */
+    private void shiftBack(int gap) {
+        final int mask = values.length - 1;
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (!used[i]) {
+                break;
+            }
+            final int home = mix(values[i]) & mask;
+            // Move the value if its home slot is not between the gap and it
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        used[gap] = false;
+    }
+
+    /**
+     * Rehashes all values into a table with the passed number of slots.
+     *
+     * @param capacity  new number of slots, must be a power of two
+     */
+    private void resize(int capacity) {
+        final long[] oldValues = values;
+        final boolean[] oldUsed = used;
+        values = new long[capacity];
+        used = new boolean[capacity];
+
+        final int mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldUsed[j]) {
+                int i = mix(oldValues[j]) & mask;
+                while (used[i]) {
+                    i = (i + 1) & mask;
+                }
+                values[i] = oldValues[j];
+                used[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a value, so packed coordinates don't cluster.
+     *
+     * @param value     value to hash
+     * @return          hash of the value
+     */
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,211 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys.
+ * Uses open addressing with linear probing, so neither lookups nor updates
+ * box the key or allocate entry objects. Null values are not allowed, an
+ * empty slot is marked by a null value.
+ *
+ * @param <V>   type of the values
+ */
+public class LongObjectHashMap<V> {
+
+    /**
+     * The default number of slots, must be a power of two.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The keys of the map.
+     */
+    private long[] keys;
+
+    /**
+     * The values of the map, null for an empty slot.
+     */
+    private Object[] values;
+
+    /**
+     * The number of entries in the map.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor - Initialises an empty map.
+     */
+    public LongObjectHashMap() {
+        this.keys = new long[DEFAULT_CAPACITY];
+        this.values = new Object[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns the value mapped to the passed key.
+     *
+     * @param key   key of the value
+     * @return      value mapped to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns if a value is mapped to the passed key.
+     *
+     * @param key   key to check
+     * @return      if a value is mapped to the key
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the passed value to the passed key.
+     *
+     * @param key       key of the value
+     * @param value     value to map, cannot be null
+     * @return          previous value mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        Object previous;
+        while ((previous = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (keys.length >> 1) + (keys.length >> 2)) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value mapped to the passed key.
+     *
+     * @param key   key of the value
+     * @return      removed value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        final int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return      number of entries in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns if the map has no entries.
+     *
+     * @return      if the map is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Closes the gap left by a removed entry, moving back the following
+     * entries of the probe sequence so lookups never stop early.
+     *
+     * @param gap   slot of the removed entry
+     */
+    private void shiftBack(int gap) {
+        final int mask = keys.length - 1;
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            final int home = mix(keys[i]) & mask;
+            // Move the entry if its home slot is not between the gap and it
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * Rehashes all entries into a table with the passed number of slots.
+     *
+     * @param capacity  new number of slots, must be a power of two
+     */
+    private void resize(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+
+        final int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] != null) {
+                int i = mix(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key, so packed coordinates don't cluster.
+     *
+     * @param key   key to hash
+     * @return      hash of the key
+     */
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,192 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Index of the Towns each player is a member of, with their role.
+ * Finding the towns of a player, or the role of a player in a Town, doesn't
+ * scan every Town.
+ */
+public class MembershipIndex {
+
+    /**
+     * Player UUID -> Memberships of the player, usually only one.
+     */
+    private final Map<UUID, List<Membership>> players = new HashMap<>();
+
+    /**
+     * Membership of a player in a Town.
+     */
+    public static class Membership {
+        private final Town town;
+        private boolean leader;
+
+        private Membership(final Town town, final boolean leader) {
+            this.town = town;
+            this.leader = leader;
+        }
+
+        /**
+         * Returns the Town the player is a member of.
+         *
+         * @return      the Town
+         */
+        public Town getTown() {
+            return town;
+        }
+
+        /**
+         * Returns if the player is a leader of the Town, else a citizen.
+         *
+         * @return      if the player is a leader
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+    }
+
+    /**
+     * Returns the memberships of a player.
+     *
+     * @param player    UUID of the player
+     * @return          memberships of the player, empty if none
+     */
+    public List<Membership> getMemberships(UUID player) {
+        final List<Membership> memberships = players.get(player);
+        return memberships == null ? Collections.<Membership>emptyList() : Collections.unmodifiableList(memberships);
+    }
+
+    /**
+     * Returns the membership of a player in a Town.
+     *
+     * @param player    UUID of the player
+     * @param town      town
+     * @return          membership of the player, or null if the player isn't
+     *                  a member of the Town
+     */
+    public Membership get(UUID player, Town town) {
+        final List<Membership> memberships = players.get(player);
+        if (memberships != null) {
+            for (Membership membership : memberships) {
+                if (membership.town == town) {
+                    return membership;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns if a player is a member of a Town, citizen or leader.
+     *
+     * @param player    UUID of the player
+     * @param town      town
+     * @return          if the player is a member of the Town
+     */
+    public boolean isMember(UUID player, Town town) {
+        return get(player, town) != null;
+    }
+
+    /**
+     * Returns if a player is a leader of a Town.
+     *
+     * @param player    UUID of the player
+     * @param town      town
+     * @return          if the player is a leader of the Town
+     */
+    public boolean isLeader(UUID player, Town town) {
+        final Membership membership = get(player, town);
+        return membership != null && membership.leader;
+    }
+
+    /**
+     * Sets the role of a player in a Town, adding the membership if needed.
+     *
+     * @param player    UUID of the player
+     * @param town      town
+     * @param leader    if the player is a leader, else a citizen
+     */
+    public void put(UUID player, Town town, boolean leader) {
+        final Membership membership = get(player, town);
+        if (membership != null) {
+            membership.leader = leader;
+            return;
+        }
+
+        List<Membership> memberships = players.get(player);
+        if (memberships == null) {
+            memberships = new ArrayList<>(1);
+            players.put(player, memberships);
+        }
+        memberships.add(new Membership(town, leader));
+    }
+
+    /**
+     * Removes the membership of a player in a Town.
+     *
+     * @param player    UUID of the player
+     * @param town      town
+     */
+    public void remove(UUID player, Town town) {
+        final List<Membership> memberships = players.get(player);
+        if (memberships == null) {
+            return;
+        }
+        for (int i = 0; i < memberships.size(); i++) {
+            if (memberships.get(i).town == town) {
+                memberships.remove(i);
+                break;
+            }
+        }
+        if (memberships.isEmpty()) {
+            players.remove(player);
+        }
+    }
+
+    /**
+     * Adds all members of the passed Town.
+     *
+     * @param town      town to add
+     */
+    public void addTown(Town town) {
+        for (UUID citizen : town.getCitizens()) {
+            put(citizen, town, false);
+        }
+        for (UUID leader : town.getLeaders()) {
+            put(leader, town, true);
+        }
+    }
+
+    /**
+     * Removes all members of the passed Town.
+     *
+     * @param town      town to remove
+     */
+    public void removeTown(Town town) {
+        for (UUID citizen : town.getCitizens()) {
+            remove(citizen, town);
+        }
+        for (UUID leader : town.getLeaders()) {
+            remove(leader, town);
+        }
+    }
+
+    /**
+     * Clears the index and adds all members of the passed Towns.
+     *
+     * @param towns     towns to index
+     */
+    public void rebuild(Collection<Town> towns) {
+        players.clear();
+        for (Town town : towns) {
+            addTown(town);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Cache of the names of the players, by UUID and by name.
+ *
+ * The cache is filled when players join, and when commands look players up.
+ * It holds a bounded number of players, the least recently used are dropped
+ * first. Names older than the refresh age are still returned, and refreshed
+ * in the background. The cache is saved to a file when the plugin is
+ * disabled, and filled from the user cache of the server the first time.
+ */
+public class PlayerCache {
+
+    /**
+     * The string for the value in the config this class is interacting with.
+     */
+    public static final String CONFIG_STRING = "Player Cache";
+
+    /**
+     * The default maximum number of players, used if no other values are
+     * found.
+     */
+    public static final int DEFAULT_SIZE = 10000;
+
+    /**
+     * The default age in hours after which names are refreshed, used if no
+     * other values are found.
+     */
+    public static final int DEFAULT_REFRESH_HOURS = 24;
+
+    /**
+     * Name of the cache file.
+     */
+    private static final String FILENAME = "players.cache";
+
+    /**
+     * Separator of the fields of a line of the cache file.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * Plugin using the cache.
+     */
+    private final Plugin plugin;
+
+    /**
+     * UUID -> Cached player, least recently used first, guarded by the
+     * instance lock.
+     */
+    private final LinkedHashMap<UUID, CachedPlayer> players = new LinkedHashMap<UUID, CachedPlayer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, CachedPlayer> eldest) {
+            if (size() <= maximumSize) {
+                return false;
+            }
+            removeName(eldest.getValue().name, eldest.getKey());
+            return true;
+        }
+    };
+
+    /**
+     * Lower case name -> UUID of the cached players, guarded by the instance
+     * lock.
+     */
+    private final HashMap<String, UUID> uuids = new HashMap<>();
+
+    /**
+     * Maximum number of cached players, read from the config when opened.
+     */
+    private int maximumSize = DEFAULT_SIZE;
+
+    /**
+     * UUIDs of the players being refreshed, guarded by the instance lock.
+     */
+    private final Set<UUID> refreshing = new HashSet<>();
+
+    /**
+     * Name of a player, with the time it was last checked.
+     */
+    private static class CachedPlayer {
+        private final String name;
+        private final long updated;
+
+        private CachedPlayer(final String name, final long updated) {
+            this.name = name;
+            this.updated = updated;
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin using the cache
+     */
+    public PlayerCache(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Loads the cache file, or fills the cache from the user cache of the
+     * server, in the background, if there is no cache file yet.
+     */
+    public void open() {
+        synchronized (this) {
+            maximumSize = Math.max(1, plugin.getConfig().getInt(CONFIG_STRING + ".Size", DEFAULT_SIZE));
+        }
+
+        final File file = getFile();
+        final ServerUserCache userCache = new ServerUserCache(plugin);
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                if (file.exists()) {
+                    read(file);
+                } else {
+                    final long now = System.currentTimeMillis();
+                    for (Map.Entry<String, UUID> player : userCache.readUUIDs().entrySet()) {
+                        putIfAbsent(player.getValue(), player.getKey(), now);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Saves the cache file, through a temporary file moved over it.
+     */
+    public void close() {
+        final StringBuilder data = new StringBuilder();
+        synchronized (this) {
+            for (Map.Entry<UUID, CachedPlayer> player : players.entrySet()) {
+                data.append(player.getKey().toString()).append(SEPARATOR).append(player.getValue().name).append(SEPARATOR).append(player.getValue().updated).append('\n');
+            }
+        }
+
+        final File file = getFile();
+        try {
+            FileUtils.writeAtomically(file, data.toString());
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save player cache to " + file, ex);
+        }
+    }
+
+    /**
+     * Caches the name of a player who joined the server.
+     *
+     * @param player    player who joined
+     */
+    public void put(Player player) {
+        put(player.getUniqueId(), player.getName(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the name of a player.
+     * Online players and cached players are returned without asking the
+     * server. Players not cached are looked up in the background, and null
+     * is returned.
+     *
+     * @param uuid      UUID of the player
+     * @return          name of the player, or null if not known yet
+     */
+    public String getName(UUID uuid) {
+        final Player online = plugin.getServer().getPlayer(uuid);
+        if (online != null) {
+            return online.getName();
+        }
+
+        final CachedPlayer cached;
+        synchronized (this) {
+            cached = players.get(uuid);
+        }
+        if (cached == null || System.currentTimeMillis() - cached.updated > getRefreshAge()) {
+            refresh(uuid);
+        }
+        return cached == null ? null : cached.name;
+    }
+
+    /**
+     * Returns the UUID of a player.
+     * Online players and cached players are returned without asking the
+     * server. Other players are looked up through the server, and cached.
+     *
+     * @param name      name of the player
+     * @return          UUID of the player, or null if not found
+     */
+    public UUID getUUID(String name) {
+        final Player online = plugin.getServer().getPlayerExact(name);
+        if (online != null) {
+            return online.getUniqueId();
+        }
+
+        synchronized (this) {
+            final UUID cached = uuids.get(name.toLowerCase());
+            if (cached != null) {
+                players.get(cached); // Most recently used
+                return cached;
+            }
+        }
+
+        final UUID uuid = PlayernameUUID.getPlayerUUID(name);
+        if (uuid != null) {
+            put(uuid, name, System.currentTimeMillis());
+        }
+        return uuid;
+    }
+
+    /**
+     * Looks the name of a player up in the background, and caches it.
+     * Does nothing if the player is already being looked up.
+     *
+     * @param uuid      UUID of the player
+     */
+    private void refresh(final UUID uuid) {
+        synchronized (this) {
+            if (!refreshing.add(uuid)) {
+                return;
+            }
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final OfflinePlayer player = plugin.getServer().getOfflinePlayer(uuid);
+                    if (player != null && player.getName() != null) {
+                        put(uuid, player.getName(), System.currentTimeMillis());
+                    }
+                } finally {
+                    synchronized (PlayerCache.this) {
+                        refreshing.remove(uuid);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Caches the name of a player, replacing the previous name.
+     *
+     * @param uuid      UUID of the player
+     * @param name      name of the player
+     * @param updated   time the name was checked, in milliseconds
+     */
+    private synchronized void put(UUID uuid, String name, long updated) {
+        final CachedPlayer previous = players.put(uuid, new CachedPlayer(name, updated));
+        if (previous != null) {
+            removeName(previous.name, uuid);
+        }
+        uuids.put(name.toLowerCase(), uuid);
+    }
+
+    /**
+     * Caches the name of a player, unless the player is already cached.
+     *
+     * @param uuid      UUID of the player
+     * @param name      name of the player
+     * @param updated   time the name was checked, in milliseconds
+     */
+    private synchronized void putIfAbsent(UUID uuid, String name, long updated) {
+        if (!players.containsKey(uuid)) {
+            put(uuid, name, updated);
+        }
+    }
+
+    /**
+     * Removes a name from the names of the cached players, if it is still
+     * the name of the player.
+     *
+     * @param name      name of the player
+     * @param uuid      UUID of the player
+     */
+    private void removeName(String name, UUID uuid) {
+        if (uuid.equals(uuids.get(name.toLowerCase()))) {
+            uuids.remove(name.toLowerCase());
+        }
+    }
+
+    /**
+     * Reads the cache file, least recently used players first.
+     * Players cached since the plugin started are kept.
+     *
+     * @param file      cache file
+     */
+    private void read(File file) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            String[] fields;
+            while ((line = reader.readLine()) != null) {
+                fields = line.split(String.valueOf(SEPARATOR));
+                if (fields.length != 3) {
+                    continue;
+                }
+                try {
+                    putIfAbsent(UUID.fromString(fields[0]), fields[1], Long.parseLong(fields[2]));
+                } catch (IllegalArgumentException ex) {
+                    // Invalid line, skip it
+                }
+            }
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not read player cache from " + file, ex);
+        }
+    }
+
+    /**
+     * Returns the age after which names are refreshed set in the config.
+     *
+     * @return      age after which names are refreshed, in milliseconds
+     */
+    private long getRefreshAge() {
+        return TimeUnit.HOURS.toMillis(plugin.getConfig().getInt(CONFIG_STRING + ".Refresh Hours", DEFAULT_REFRESH_HOURS));
+    }
+
+    /**
+     * Returns the cache file.
+     *
+     * @return      cache file
+     */
+    private File getFile() {
+        return new File(plugin.getDataFolder(), FILENAME);
+    }
+}
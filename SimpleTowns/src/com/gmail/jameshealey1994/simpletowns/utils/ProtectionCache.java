@@ -0,0 +1,176 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Cache of the build decisions of each player, by chunk and by y-band.
+ *
+ * Decisions are kept in a small array per player, indexed by a hash of the
+ * chunk and band, so repeated actions in the same chunk cost one array
+ * lookup instead of permission checks and a town lookup.
+ * All decisions are invalidated at once by increasing the generation, when
+ * a town, a membership or the config changes. Permissions can change
+ * without an event, so the decisions of a player also expire after the
+ * lifetime set in the config.
+ */
+public class ProtectionCache {
+
+    /**
+     * The string for the value in the config this class is interacting with.
+     */
+    public static final String CONFIG_STRING = "Protection Cache Seconds";
+
+    /**
+     * The default lifetime of the decisions in seconds, used if no other
+     * values are found.
+     */
+    public static final int DEFAULT_SECONDS = 30;
+
+    /**
+     * Returned by get if the decision isn't cached.
+     */
+    public static final int UNKNOWN = -1;
+
+    /**
+     * Returned by get if the player can't build.
+     */
+    public static final int DENIED = 0;
+
+    /**
+     * Returned by get if the player can build.
+     */
+    public static final int ALLOWED = 1;
+
+    /**
+     * Number of decisions cached per player, a power of 2.
+     */
+    private static final int SIZE = 64;
+
+    /**
+     * Plugin using the cache.
+     */
+    private final Plugin plugin;
+
+    /**
+     * UUID -> Decisions of the player.
+     */
+    private final HashMap<UUID, Decisions> players = new HashMap<>();
+
+    /**
+     * Current generation, decisions of older generations are invalid.
+     */
+    private int generation = 0;
+
+    /**
+     * Decisions of a player, cleared when their generation is old or their
+     * lifetime is over.
+     */
+    private static class Decisions {
+        private int generation;
+        private long expires;
+        private final long[] chunks = new long[SIZE];
+        private final int[] keys = new int[SIZE]; // World id and band, -1 if empty
+        private final boolean[] allowed = new boolean[SIZE];
+
+        private Decisions() {
+            Arrays.fill(keys, -1);
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin.
+     *
+     * @param plugin    plugin using the cache
+     */
+    public ProtectionCache(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Returns the cached decision of a player for a chunk and a band.
+     *
+     * @param player    player building
+     * @param worldId   id of the world of the chunk
+     * @param chunkX    x coordinate of the chunk
+     * @param chunkZ    z coordinate of the chunk
+     * @param band      y-band of the block in the chunk, 0 or 1
+     * @return          ALLOWED, DENIED, or UNKNOWN if not cached
+     */
+    public int get(Player player, int worldId, int chunkX, int chunkZ, int band) {
+        final Decisions decisions = players.get(player.getUniqueId());
+        if (decisions == null || decisions.generation != generation || System.currentTimeMillis() > decisions.expires) {
+            return UNKNOWN;
+        }
+        final long chunk = ChunkIndex.pack(chunkX, chunkZ);
+        final int key = worldId << 1 | band;
+        final int slot = slot(chunk, key);
+        if (decisions.keys[slot] != key || decisions.chunks[slot] != chunk) {
+            return UNKNOWN;
+        }
+        return decisions.allowed[slot] ? ALLOWED : DENIED;
+    }
+
+    /**
+     * Caches the decision of a player for a chunk and a band, replacing the
+     * decision in the same slot.
+     *
+     * @param player    player building
+     * @param worldId   id of the world of the chunk
+     * @param chunkX    x coordinate of the chunk
+     * @param chunkZ    z coordinate of the chunk
+     * @param band      y-band of the block in the chunk, 0 or 1
+     * @param allowed   if the player can build
+     */
+    public void put(Player player, int worldId, int chunkX, int chunkZ, int band, boolean allowed) {
+        Decisions decisions = players.get(player.getUniqueId());
+        if (decisions == null) {
+            decisions = new Decisions();
+            players.put(player.getUniqueId(), decisions);
+        }
+        final long now = System.currentTimeMillis();
+        if (decisions.generation != generation || now > decisions.expires) {
+            Arrays.fill(decisions.keys, -1);
+            decisions.generation = generation;
+            decisions.expires = now + TimeUnit.SECONDS.toMillis(plugin.getConfig().getInt(CONFIG_STRING, DEFAULT_SECONDS));
+        }
+        final long chunk = ChunkIndex.pack(chunkX, chunkZ);
+        final int key = worldId << 1 | band;
+        final int slot = slot(chunk, key);
+        decisions.chunks[slot] = chunk;
+        decisions.keys[slot] = key;
+        decisions.allowed[slot] = allowed;
+    }
+
+    /**
+     * Invalidates the decisions of all players.
+     */
+    public void invalidate() {
+        generation++;
+    }
+
+    /**
+     * Removes the decisions of a player.
+     *
+     * @param player    player whose decisions are removed
+     */
+    public void remove(Player player) {
+        players.remove(player.getUniqueId());
+    }
+
+    /**
+     * Returns the slot of a chunk and a band in the decisions of a player.
+     *
+     * @param chunk     packed coordinates of the chunk
+     * @param key       world id and band
+     * @return          index in the decisions
+     */
+    private static int slot(long chunk, int key) {
+        final long hash = (chunk ^ ((long) key << 20)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 40) & (SIZE - 1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Reads the names and UUIDs of the players who joined the server from the
+ * user cache of the server, usercache.json.
+ * Reading the file doesn't ask Mojang, and can be done off the main thread.
+ */
+public class ServerUserCache {
+
+    /**
+     * Name of the user cache file of the server.
+     */
+    public static final String FILENAME = "usercache.json";
+
+    /**
+     * Plugin reading the user cache.
+     */
+    private final Plugin plugin;
+
+    /**
+     * User cache file of the server.
+     */
+    private final File file;
+
+    /**
+     * Constructor - Sets plugin and user cache file.
+     * Has to be called on the main thread.
+     *
+     * @param plugin    plugin reading the user cache
+     */
+    public ServerUserCache(Plugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getServer().getWorldContainer(), FILENAME);
+    }
+
+    /**
+     * Returns the UUIDs of the players in the user cache.
+     *
+     * @return  player name -> UUID of the player, empty if the user cache
+     *          can't be read
+     */
+    public Map<String, UUID> readUUIDs() {
+        final Map<String, UUID> uuids = new HashMap<>();
+        if (!file.isFile()) {
+            return uuids;
+        }
+
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            final JsonArray entries = new JsonParser().parse(reader).getAsJsonArray();
+            JsonObject entry;
+            for (JsonElement element : entries) {
+                entry = element.getAsJsonObject();
+                if (!entry.has("name") || !entry.has("uuid")) {
+                    continue;
+                }
+                try {
+                    uuids.put(entry.get("name").getAsString(), UUID.fromString(entry.get("uuid").getAsString()));
+                } catch (IllegalArgumentException ex) {
+                    // Invalid UUID, skip this player
+                }
+            }
+        } catch (IOException | JsonParseException | IllegalStateException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not read " + file, ex);
+        }
+        return uuids;
+    }
+}
@@ -0,0 +1,502 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Records the changes of towns into the config.
+ *
+ * If the journal is enabled, each change is also appended to a journal file
+ * as one short record, instead of saving the whole config. Every few
+ * records, the config is saved as a snapshot and the records it contains
+ * are dropped from the journal. Records are numbered, and the config holds
+ * the number of the last record it contains, so the records after it are
+ * replayed into the config when the plugin starts.
+ */
+public class TownJournal {
+
+    /**
+     * The string for the value in the config this class is interacting with.
+     */
+    public static final String CONFIG_STRING = "Journal";
+
+    /**
+     * The default enabled value, used if no other values are found.
+     */
+    public static final boolean DEFAULT_ENABLED = false;
+
+    /**
+     * The default number of records between snapshots, used if no other
+     * values are found.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+
+    /**
+     * Name of the journal file.
+     */
+    private static final String FILENAME = "towns.journal";
+
+    /**
+     * Separator of the fields of a record.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * The path to the towns in the config.
+     */
+    private static final String PATH = "Towns";
+
+    /**
+     * Plugin with the config holding the towns.
+     */
+    private final Plugin plugin;
+
+    /**
+     * Saver of the config.
+     */
+    private final ConfigSaver configSaver;
+
+    /**
+     * Records not in a written snapshot yet, guarded by the instance lock.
+     */
+    private final ArrayDeque<Record> records = new ArrayDeque<>();
+
+    /**
+     * Writer appending to the journal file, or null if the journal is
+     * disabled, guarded by the instance lock.
+     */
+    private Writer writer = null;
+
+    /**
+     * Number of the last record.
+     */
+    private long sequence = 0;
+
+    /**
+     * Number of records since the last snapshot.
+     */
+    private int recordsSinceSnapshot = 0;
+
+    /**
+     * Record of the journal, with its number.
+     */
+    private static class Record {
+        private final long number;
+        private final String line;
+
+        private Record(final long number, final String line) {
+            this.number = number;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Constructor - Sets plugin and saver of its config.
+     *
+     * @param plugin        plugin with the config holding the towns
+     * @param configSaver   saver of the config
+     */
+    public TownJournal(Plugin plugin, ConfigSaver configSaver) {
+        this.plugin = plugin;
+        this.configSaver = configSaver;
+    }
+
+    /**
+     * Returns if the config has specified that the journal is enabled.
+     *
+     * @return      if the journal is enabled
+     */
+    public boolean isEnabled() {
+        return plugin.getConfig().getBoolean(CONFIG_STRING + ".Enabled", DEFAULT_ENABLED);
+    }
+
+    /**
+     * Replays the records of the journal file missing from the config, then
+     * opens the journal if it is enabled.
+     * Has to be called once the config is loaded, before the towns are read
+     * from it.
+     */
+    public synchronized void open() {
+        sequence = plugin.getConfig().getLong(CONFIG_STRING + ".Sequence", 0);
+        records.clear();
+        recordsSinceSnapshot = 0;
+
+        final File file = getFile();
+        if (file.exists()) {
+            replay(file);
+        }
+
+        if (!isEnabled()) {
+            if (!records.isEmpty()) {
+                // Journal disabled since the records were written, keep them in the config only
+                if (configSaver.writeNow()) {
+                    records.clear();
+                    file.delete();
+                }
+            }
+            return;
+        }
+
+        try {
+            rewrite();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not open journal " + file + ", saving the whole config instead", ex);
+            writer = null;
+        }
+    }
+
+    /**
+     * Saves a snapshot of the config including every record, then closes
+     * the journal.
+     * Has to be called from the main thread, before the config is reloaded
+     * and when the plugin is disabled.
+     */
+    public synchronized void close() {
+        if (writer == null) {
+            configSaver.flush();
+            return;
+        }
+
+        final long snapshotSequence = sequence;
+        final boolean written = configSaver.writeNow();
+        try {
+            writer.close();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not close journal " + getFile(), ex);
+        }
+        writer = null;
+        if (written) {
+            dropRecords(snapshotSequence);
+        }
+    }
+
+    /**
+     * Records the creation of a town.
+     *
+     * @param townname      name of the town
+     * @param leader        UUID of the leader of the town
+     * @param worldname     world name of the first chunk of the town
+     * @param chunk         coordinates of the first chunk, as "x,z"
+     */
+    public void createTown(String townname, UUID leader, String worldname, String chunk) {
+        record("CREATE", townname, leader.toString(), worldname, chunk);
+    }
+
+    /**
+     * Records the deletion of a town.
+     *
+     * @param townname      name of the town
+     */
+    public void deleteTown(String townname) {
+        record("DELETE", townname);
+    }
+
+    /**
+     * Records the renaming of a town.
+     *
+     * @param oldName       previous name of the town
+     * @param newName       new name of the town
+     */
+    public void renameTown(String oldName, String newName) {
+        record("RENAME", oldName, newName);
+    }
+
+    /**
+     * Records a chunk claimed by a town.
+     *
+     * @param townname      name of the town
+     * @param worldname     world name of the chunk
+     * @param chunk         coordinates of the chunk, as "x,z"
+     */
+    public void claimChunk(String townname, String worldname, String chunk) {
+        record("CLAIM", townname, worldname, chunk);
+    }
+
+    /**
+     * Records a chunk unclaimed by a town.
+     *
+     * @param townname      name of the town
+     * @param worldname     world name of the chunk
+     * @param chunk         coordinates of the chunk, as "x,z"
+     */
+    public void unclaimChunk(String townname, String worldname, String chunk) {
+        record("UNCLAIM", townname, worldname, chunk);
+    }
+
+    /**
+     * Records a citizen added to a town.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the citizen
+     */
+    public void addCitizen(String townname, UUID player) {
+        record("ADD", townname, player.toString());
+    }
+
+    /**
+     * Records a member, leader or citizen, removed from a town.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the member
+     */
+    public void removeMember(String townname, UUID player) {
+        record("REMOVE", townname, player.toString());
+    }
+
+    /**
+     * Records a citizen of a town promoted to leader.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the citizen
+     */
+    public void promote(String townname, UUID player) {
+        record("PROMOTE", townname, player.toString());
+    }
+
+    /**
+     * Records a leader of a town demoted to citizen.
+     *
+     * @param townname      name of the town
+     * @param player        UUID of the leader
+     */
+    public void demote(String townname, UUID player) {
+        record("DEMOTE", townname, player.toString());
+    }
+
+    /**
+     * Applies a change to the config, then appends it to the journal, or
+     * marks the config dirty if the journal is disabled.
+     * Has to be called from the main thread.
+     *
+     * @param fields    type of the change, then its arguments
+     */
+    private synchronized void record(String... fields) {
+        apply(fields);
+        if (writer == null) {
+            configSaver.markDirty();
+            return;
+        }
+
+        sequence++;
+        plugin.getConfig().set(CONFIG_STRING + ".Sequence", sequence); // Snapshots know which records they contain
+        final StringBuilder line = new StringBuilder().append(sequence);
+        for (String field : fields) {
+            line.append(SEPARATOR).append(field);
+        }
+        line.append('\n');
+        final Record record = new Record(sequence, line.toString());
+        records.add(record);
+
+        try {
+            writer.write(record.line);
+            writer.flush();
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not append to journal " + getFile() + ", saving the whole config instead", ex);
+            configSaver.markDirty();
+        }
+
+        if (++recordsSinceSnapshot >= plugin.getConfig().getInt(CONFIG_STRING + ".Snapshot Interval", DEFAULT_SNAPSHOT_INTERVAL)) {
+            recordsSinceSnapshot = 0;
+            final long snapshotSequence = sequence;
+            configSaver.saveNow(new Runnable() {
+                @Override
+                public void run() {
+                    dropRecords(snapshotSequence);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies a change to the config.
+     *
+     * @param fields    type of the change, then its arguments
+     * @throws IllegalArgumentException     if the change is unknown
+     */
+    private void apply(String[] fields) {
+        final String type = fields[0];
+        final String base = PATH + "." + fields[1];
+        switch (type) {
+            case "CREATE": {
+                plugin.getConfig().set(base + ".Leaders", Arrays.asList(fields[2]));
+                plugin.getConfig().set(base + ".Chunks." + fields[3], Arrays.asList(fields[4]));
+                break;
+            }
+            case "DELETE": {
+                plugin.getConfig().set(base, null);
+                break;
+            }
+            case "RENAME": {
+                final ConfigurationSection values = plugin.getConfig().getConfigurationSection(base);
+                plugin.getConfig().set(base, null);
+                plugin.getConfig().set(PATH + "." + fields[2], values);
+                break;
+            }
+            case "CLAIM": {
+                addToList(base + ".Chunks." + fields[2], fields[3]);
+                break;
+            }
+            case "UNCLAIM": {
+                removeFromList(base + ".Chunks." + fields[2], fields[3]);
+                break;
+            }
+            case "ADD": {
+                addToList(base + ".Citizens", fields[2]);
+                break;
+            }
+            case "REMOVE": {
+                removeFromList(base + ".Citizens", fields[2]);
+                removeFromList(base + ".Leaders", fields[2]);
+                break;
+            }
+            case "PROMOTE": {
+                removeFromList(base + ".Citizens", fields[2]);
+                addToList(base + ".Leaders", fields[2]);
+                break;
+            }
+            case "DEMOTE": {
+                removeFromList(base + ".Leaders", fields[2]);
+                addToList(base + ".Citizens", fields[2]);
+                break;
+            }
+            default: {
+                throw new IllegalArgumentException("Unknown journal record '" + type + "'");
+            }
+        }
+    }
+
+    /**
+     * Adds a value to a list of the config.
+     *
+     * @param path      path of the list
+     * @param value     value to add
+     */
+    private void addToList(String path, String value) {
+        final List<String> list = plugin.getConfig().getStringList(path);
+        list.add(value);
+        plugin.getConfig().set(path, list);
+    }
+
+    /**
+     * Removes a value from a list of the config.
+     *
+     * @param path      path of the list
+     * @param value     value to remove
+     */
+    private void removeFromList(String path, String value) {
+        final List<String> list = plugin.getConfig().getStringList(path);
+        list.remove(value);
+        plugin.getConfig().set(path, list);
+    }
+
+    /**
+     * Applies the records of the journal file newer than the config.
+     * Reading stops at the first incomplete or invalid record, which can
+     * only be the last one, cut by a crash.
+     *
+     * @param file      journal file
+     */
+    private void replay(File file) {
+        final String content;
+        try {
+            content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not read journal " + file, ex);
+            return;
+        }
+
+        final long snapshotSequence = sequence;
+        int replayed = 0;
+        int start = 0;
+        int end;
+        String line;
+        while ((end = content.indexOf('\n', start)) != -1) {
+            line = content.substring(start, end);
+            start = end + 1;
+
+            final String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+            final long number;
+            try {
+                number = Long.parseLong(fields[0]);
+                if (number <= snapshotSequence) {
+                    continue; // Already in the config
+                }
+                apply(Arrays.copyOfRange(fields, 1, fields.length));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+                plugin.getLogger().log(Level.WARNING, "Invalid record in journal {0}, ignoring it and the following records: {1}", new Object[] {file, line});
+                start = content.length();
+                break;
+            }
+            sequence = number;
+            records.add(new Record(number, line + '\n'));
+            replayed++;
+        }
+        if (start < content.length()) {
+            plugin.getLogger().log(Level.WARNING, "Incomplete last record in journal {0}, ignoring it", file);
+        }
+
+        if (replayed > 0) {
+            plugin.getConfig().set(CONFIG_STRING + ".Sequence", sequence);
+            plugin.getLogger().log(Level.INFO, "Replayed {0} records from journal {1}", new Object[] {replayed, file});
+        }
+    }
+
+    /**
+     * Drops the records contained in a written snapshot, and rewrites the
+     * journal file without them.
+     *
+     * @param snapshotSequence      number of the last record in the snapshot
+     */
+    private synchronized void dropRecords(long snapshotSequence) {
+        while (!records.isEmpty() && records.peekFirst().number <= snapshotSequence) {
+            records.pollFirst();
+        }
+        try {
+            if (writer != null) {
+                writer.close();
+                rewrite();
+            } else if (records.isEmpty()) {
+                getFile().delete();
+            }
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not truncate journal " + getFile(), ex);
+        }
+    }
+
+    /**
+     * Writes the records not in a snapshot yet to a new journal file, moved
+     * over the previous one, and opens it for appending.
+     *
+     * @throws IOException      if the file can't be written
+     */
+    private void rewrite() throws IOException {
+        final File file = getFile();
+        final StringBuilder data = new StringBuilder();
+        for (Record record : records) {
+            data.append(record.line);
+        }
+        FileUtils.writeAtomically(file, data.toString());
+        writer = new OutputStreamWriter(Files.newOutputStream(file.toPath(), StandardOpenOption.APPEND), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the journal file.
+     *
+     * @return      journal file
+     */
+    private File getFile() {
+        return new File(plugin.getDataFolder(), FILENAME);
+    }
+}
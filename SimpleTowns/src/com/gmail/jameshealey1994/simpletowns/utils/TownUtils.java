@@ -2,18 +2,11 @@ package com.gmail.jameshealey1994.simpletowns.utils;
 
 import com.gmail.jameshealey1994.simpletowns.SimpleTowns;
 import com.gmail.jameshealey1994.simpletowns.object.Town;
-import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
-import com.gmail.jameshealey1994.simpletowns.utils.PlayernameUUID;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.TreeSet;
 import java.util.logging.Level;
-import org.bukkit.Bukkit;
-import org.bukkit.configuration.ConfigurationSection;
-import org.dynmap.markers.AreaMarker;
+import org.bukkit.World;
 
 /**
  * Utility methods that interact with a configuration file for town values.
@@ -64,108 +57,37 @@ public class TownUtils {
     }
 
     /**
-     * Returns towns from config.
+     * Returns towns from the town store, and starts adding them to our
+     * Dynmap markerset and to WorldGuard regions on the next ticks.
+     * Only the chunks in loaded worlds are merged into areas, the other
+     * worlds are activated when they are loaded.
      *
-     * @return  towns from config
+     * @return  towns from the town store
      */
-    public Map<String, Town> getTownsFromConfig() {
-        // Delete and create our Dynmap market
-        plugin.getDynmapHook().deleteMarkerset(); // Delete in case of reload command
+    public Map<String, Town> getTownsFromStore() {
+        // Create our Dynmap markerset, kept in case of reload command
         if (plugin.getDynmapHook().checkDynmapAndCreateMarkerset(this.plugin))
             plugin.getLogger().log(Level.INFO, "Hooked into Dynmap");
 
-        // Clear WorldGuard in case of reload command
-        plugin.getWorldGuardHook().clearWorldGuard();
+        // Reconcile or clear WorldGuard regions, also in case of reload command
+        plugin.getWorldGuardHook().prepareRegions();
 
-        final ConfigurationSection townConfigSection = new ConfigUtils(plugin).getConfigSection(PATH);
-        final Map<String, Town> townsFromConfig = new HashMap<>();
-        final Set<String> townKeys = new HashSet<>(townConfigSection.getKeys(false));
+        final Map<String, Town> townsFromStore = plugin.getTownStore().loadTowns();
 
-        for (String townname : townKeys) {
-            try {
-                UUID playerUUID;
-                boolean hasUUIDconversion = false;
-
-                final Set<UUID> leaders = new HashSet<>();
-                final ArrayList<String> unknownLeaders = new ArrayList<>(); // Only for UUID conversion
-                for (String player: plugin.getConfig().getStringList(PATH + "." + townname + ".Leaders")) {
-                    try {
-                        leaders.add(UUID.fromString(player));
-                    } catch (IllegalArgumentException e) {
-                        playerUUID = PlayernameUUID.getPlayerUUID(player);
-                        if (playerUUID != null) leaders.add(playerUUID);
-                        else unknownLeaders.add(player);
-                        hasUUIDconversion = true;
-                    }
-                }
-
-                // Save UUID conversion
-                if (hasUUIDconversion) {
-                    final String path = "Towns." + townname + ".Leaders";
-                    for (UUID leader : leaders){
-                        unknownLeaders.add(leader.toString()); // Now contains unconverted to UUID and converted to UUID leaders
-                    }
-                    plugin.getConfig().set(path, unknownLeaders);
-                }
-
-                hasUUIDconversion = false;
-
-                final Set<UUID> citizens = new HashSet<>();
-                final ArrayList<String> unknownCitizens = new ArrayList<>(); // Only for UUID conversion
-                for (String player: plugin.getConfig().getStringList(PATH + "." + townname + ".Citizens")) {
-                    try {
-                        citizens.add(UUID.fromString(player));
-                    } catch (IllegalArgumentException e) {
-                        playerUUID = PlayernameUUID.getPlayerUUID(player);
-                        if (playerUUID != null) citizens.add(playerUUID);
-                        else unknownCitizens.add(player);
-                        hasUUIDconversion = true;
-                    }
-                }
-
-                // Save UUID conversion
-                if (hasUUIDconversion) {
-                    final String path = "Towns." + townname + ".Citizens";
-                    for (UUID citizen : citizens){
-                        unknownCitizens.add(citizen.toString()); // Now contains unconverted to UUID and converted to UUID citizens
-                    }
-                    plugin.getConfig().set(path, unknownCitizens);
-                }
-
-
-                final Set<String> chunkWorlds = new HashSet<>(plugin.getConfig().getConfigurationSection(PATH + "." + townname + ".Chunks").getKeys(false));
-                final Set<TownChunk> chunks = new HashSet<>();
-                for (String world : chunkWorlds) {
-                    final Set<String> chunkKeys = new HashSet<>(plugin.getConfig().getStringList(PATH + "." + townname + ".Chunks." + world));
-                    for (String chunk : chunkKeys) {
-                        final int chunkX = Integer.parseInt(chunk.substring(0, chunk.indexOf(',')));
-                        final int chunkZ = Integer.parseInt(chunk.substring(chunk.indexOf(',') + 1));
-                        final TownChunk townchunk = new TownChunk(chunkX, chunkZ, world);
-                        chunks.add(townchunk);
-                    }
-                }
-                final Town town = new Town(townname, leaders, citizens, chunks);
-                town.getChunksToAreas().update(); // This merge continuous chunks into areas
-                townsFromConfig.put(townname.toLowerCase(), town);
-
-                // Update our Dynmap markerset
-                try {
-                    plugin.getDynmapHook().addTownToMarkerset(town);
-                } catch (Exception ex) {
-                    plugin.getLogger().log(Level.WARNING, "{0} creating town areas {1} on Dynmap: {2}", new Object[] {ex.getClass().getName(), townname, ex.getMessage()});
-                }
-
-                // Create WorldGuard regions
-                try {
-                    plugin.getWorldGuardHook().addTownRegions(town);
-                } catch (Exception ex) {
-                    plugin.getLogger().log(Level.WARNING, "{0} creating town areas {1} on WorldGuard: {2}", new Object[] {ex.getClass().getName(), townname, ex.getMessage()});
-                }
-
-            } catch (NumberFormatException | NullPointerException ex) {
-                plugin.getLogger().log(Level.WARNING, "{0} getting towns from config: {1}", new Object[] {ex.getClass().getName(), ex.getMessage()});
-            }
+        // Merge continuous chunks into areas in the loaded worlds, in parallel
+        final Set<Integer> loadedWorlds = new TreeSet<>(); // Sorted so area names don't depend on hash order
+        for (World world : plugin.getServer().getWorlds()) {
+            loadedWorlds.add(WorldRegistry.getId(world));
         }
-        return townsFromConfig;
+        townsFromStore.values().parallelStream().forEach(town -> {
+            for (int world : loadedWorlds) {
+                town.getChunksToAreas().activateWorld(world);
+            }
+        });
+
+        // Markers of the other towns are updated when registered
+        plugin.getDynmapHook().retainTowns(townsFromStore.keySet());
+        plugin.registerTowns(townsFromStore.values());
+        return townsFromStore;
     }
 }
\ No newline at end of file
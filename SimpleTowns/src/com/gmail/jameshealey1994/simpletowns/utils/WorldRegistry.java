@@ -0,0 +1,274 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Registry giving each world a small int id, used instead of the world name
+ * to key the chunks of the towns.
+ *
+ * Worlds are known by name until they are loaded, then by UUID too. If a
+ * loaded world has a UUID already registered under another name, the world
+ * was renamed: it keeps its id, and both names lead to it. The registry is
+ * saved to a file, so renames are recognised across restarts.
+ *
+ * Ids are looked up without locking, from any thread. They are only valid
+ * while the plugin is loaded.
+ */
+public final class WorldRegistry {
+
+    /**
+     * Id returned for worlds not registered.
+     */
+    public static final int NO_WORLD = -1;
+
+    /**
+     * Name of the registry file.
+     */
+    private static final String FILENAME = "worlds.registry";
+
+    /**
+     * Separator of the fields of a line of the registry file.
+     */
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * World name, and previous names of renamed worlds -> Id of the world.
+     */
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+
+    /**
+     * World UUID -> Id of the world.
+     */
+    private static final ConcurrentHashMap<UUID, Integer> IDS_BY_UUID = new ConcurrentHashMap<>();
+
+    /**
+     * Id -> Current name of the world, replaced when a world is added or
+     * renamed, under the class lock.
+     */
+    private static volatile String[] names = new String[0];
+
+    /**
+     * Id -> UUID of the world, or null if the world wasn't loaded yet,
+     * replaced under the class lock like names.
+     */
+    private static volatile UUID[] uuids = new UUID[0];
+
+    /**
+     * Not instantiable.
+     */
+    private WorldRegistry() {
+    }
+
+    /**
+     * Returns the id of a world, registering the world name if needed.
+     *
+     * @param worldname     name of the world
+     * @return              id of the world
+     */
+    public static int getId(String worldname) {
+        final Integer id = IDS.get(worldname);
+        return id != null ? id : addName(worldname);
+    }
+
+    /**
+     * Returns the id of a loaded world, registering the world if needed.
+     *
+     * @param world     loaded world
+     * @return          id of the world
+     */
+    public static int getId(World world) {
+        final Integer id = IDS_BY_UUID.get(world.getUID());
+        return id != null ? id : register(world);
+    }
+
+    /**
+     * Returns the id of a world, without registering it.
+     *
+     * @param worldname     name of the world
+     * @return              id of the world, or NO_WORLD if not registered
+     */
+    public static int findId(String worldname) {
+        final Integer id = IDS.get(worldname);
+        return id != null ? id : NO_WORLD;
+    }
+
+    /**
+     * Returns the current name of a world.
+     *
+     * @param id        id of the world
+     * @return          name of the world
+     */
+    public static String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Returns the UUID of a world.
+     *
+     * @param id        id of the world
+     * @return          UUID of the world, or null if it wasn't loaded yet
+     */
+    public static UUID getUUID(int id) {
+        final UUID[] currentUUIDs = uuids;
+        return id < currentUUIDs.length ? currentUUIDs[id] : null;
+    }
+
+    /**
+     * Registers a loaded world, by name and UUID.
+     * If the UUID is already registered under another name, the world was
+     * renamed, the new name leads to the same id. If the name is the
+     * previous name of another renamed world, it leads to a new id instead.
+     *
+     * @param world     loaded world
+     * @return          id of the world
+     */
+    public static synchronized int register(World world) {
+        final String worldname = world.getName();
+        final Integer known = IDS_BY_UUID.get(world.getUID());
+        if (known != null) {
+            if (!names[known].equals(worldname)) {
+                rename(known, worldname);
+            }
+            return known;
+        }
+
+        int id = getId(worldname);
+        if (getUUID(id) != null && !names[id].equals(worldname)) {
+            IDS.remove(worldname); // Name reused after a rename
+            id = addName(worldname);
+        }
+        final UUID[] newUUIDs = Arrays.copyOf(uuids, names.length);
+        newUUIDs[id] = world.getUID();
+        uuids = newUUIDs;
+        IDS_BY_UUID.put(world.getUID(), id);
+        return id;
+    }
+
+    /**
+     * Loads the registry file, so renamed worlds keep their id.
+     * Worlds already registered are kept.
+     *
+     * @param plugin    plugin owning the registry file
+     */
+    public static void load(Plugin plugin) {
+        final File file = getFile(plugin);
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            String[] fields;
+            while ((line = reader.readLine()) != null) {
+                fields = line.split(String.valueOf(SEPARATOR));
+                if (fields.length != 2) {
+                    continue;
+                }
+                try {
+                    load(UUID.fromString(fields[0]), fields[1]);
+                } catch (IllegalArgumentException ex) {
+                    // Invalid line, skip it
+                }
+            }
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.WARNING, "Could not read world registry from " + file, ex);
+        }
+    }
+
+    /**
+     * Saves the UUID and current name of the worlds loaded at least once,
+     * through a temporary file moved over the registry file.
+     *
+     * @param plugin    plugin owning the registry file
+     */
+    public static void save(Plugin plugin) {
+        final UUID[] currentUUIDs = uuids; // Before names, which are never shorter
+        final String[] currentNames = names;
+        final StringBuilder data = new StringBuilder();
+        for (int id = 0; id < currentUUIDs.length; id++) {
+            if (currentUUIDs[id] != null) {
+                data.append(currentUUIDs[id].toString()).append(SEPARATOR).append(currentNames[id]).append('\n');
+            }
+        }
+        final File file = getFile(plugin);
+        try {
+            FileUtils.writeAtomically(file, data.toString());
+        } catch (IOException ex) {
+            plugin.getLogger().log(Level.SEVERE, "Could not save world registry to " + file, ex);
+        }
+    }
+
+    /**
+     * Registers a world read from the registry file, unless its UUID is
+     * already registered.
+     *
+     * @param uuid          UUID of the world
+     * @param worldname     last known name of the world
+     */
+    private static synchronized void load(UUID uuid, String worldname) {
+        if (IDS_BY_UUID.containsKey(uuid)) {
+            return;
+        }
+        final int id = getId(worldname);
+        if (uuids.length > id && uuids[id] != null) {
+            return; // Name reused by another world
+        }
+        final UUID[] newUUIDs = Arrays.copyOf(uuids, names.length);
+        newUUIDs[id] = uuid;
+        uuids = newUUIDs;
+        IDS_BY_UUID.put(uuid, id);
+    }
+
+    /**
+     * Registers a new world name, with a new id.
+     *
+     * @param worldname     name of the world
+     * @return              id of the world
+     */
+    private static synchronized int addName(String worldname) {
+        final Integer known = IDS.get(worldname);
+        if (known != null) {
+            return known; // Added by another thread
+        }
+        final int id = names.length;
+        final String[] newNames = Arrays.copyOf(names, id + 1);
+        newNames[id] = worldname;
+        names = newNames;
+        IDS.put(worldname, id);
+        return id;
+    }
+
+    /**
+     * Sets the current name of a renamed world. The previous name still
+     * leads to the world.
+     *
+     * @param id            id of the renamed world
+     * @param worldname     new name of the world
+     */
+    private static void rename(int id, String worldname) {
+        final String[] newNames = names.clone();
+        newNames[id] = worldname;
+        names = newNames;
+        IDS.put(worldname, id);
+    }
+
+    /**
+     * Returns the registry file.
+     *
+     * @param plugin    plugin owning the registry file
+     * @return          registry file
+     */
+    private static File getFile(Plugin plugin) {
+        return new File(plugin.getDataFolder(), FILENAME);
+    }
+}
@@ -0,0 +1,95 @@
+package com.gmail.jameshealey1994.simpletowns.localisation;
+
+import com.gmail.jameshealey1994.simpletowns.utils.ColorUtils;
+
+/**
+ * Offline microbenchmark of the rendering of localisation messages: the
+ * compiled MessageTemplate against the String.format() and
+ * ColorUtils.addColor() path it replaced, which coloured and parsed the
+ * message again on every use.
+ * Not a test, run it with the test classpath:
+ * java com.gmail.jameshealey1994.simpletowns.localisation.MessageTemplateBenchmark
+ */
+public final class MessageTemplateBenchmark {
+
+    /**
+     * Messages and arguments representative of the localisation entries.
+     */
+    private static final String[] MESSAGES = {
+        "&cPermission denied",
+        "&cCannot find town '%1$s'",
+        "&cPlayer '%1$s' is already a member of Town '%2$s'",
+        "&cNo town owns chunk: '%1$s (%2$s,%3$s)'",
+    };
+    private static final Object[] ARGS = {"world", -12, 345};
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final int ITERATIONS = 200000;
+
+    /**
+     * Sink for the rendered messages, so that they aren't optimised away.
+     */
+    private static int sink;
+
+    private MessageTemplateBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        final MessageTemplate[] templates = new MessageTemplate[MESSAGES.length];
+        for (int i = 0; i < MESSAGES.length; i++) {
+            templates[i] = MessageTemplate.compile(ColorUtils.addColor(MESSAGES[i]));
+            if (!templates[i].render(ARGS).equals(String.format(ColorUtils.addColor(MESSAGES[i]), ARGS))) {
+                throw new IllegalStateException("Different output for '" + MESSAGES[i] + "'");
+            }
+        }
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runFormat();
+            runTemplates(templates);
+        }
+
+        long formatTotal = 0;
+        long templateTotal = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            formatTotal += runFormat();
+            templateTotal += runTemplates(templates);
+        }
+
+        final long renders = (long) ROUNDS * ITERATIONS * MESSAGES.length;
+        System.out.printf("String.format + addColor: %.1f ns/message%n", (double) formatTotal / renders);
+        System.out.printf("MessageTemplate.render:   %.1f ns/message%n", (double) templateTotal / renders);
+        System.out.printf("Speedup: %.1fx (sink %d)%n", (double) formatTotal / templateTotal, sink);
+    }
+
+    /**
+     * Renders the messages as before the templates.
+     *
+     * @return      elapsed time in nanoseconds
+     */
+    private static long runFormat() {
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String message : MESSAGES) {
+                sink += String.format(ColorUtils.addColor(message), ARGS).length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Renders the messages with the compiled templates.
+     *
+     * @param templates     compiled messages
+     * @return              elapsed time in nanoseconds
+     */
+    private static long runTemplates(MessageTemplate[] templates) {
+        final long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (MessageTemplate template : templates) {
+                sink += template.render(ARGS).length();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
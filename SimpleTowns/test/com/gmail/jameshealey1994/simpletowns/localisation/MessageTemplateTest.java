@@ -0,0 +1,187 @@
+package com.gmail.jameshealey1994.simpletowns.localisation;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the parsing and rendering of localisation messages, and the
+ * reporting of invalid messages when the localisation file is loaded.
+ */
+public class MessageTemplateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void fillsOrdinarySlotsInOrder() {
+        final MessageTemplate template = MessageTemplate.compile("Town %s has %d chunks");
+
+        assertEquals("Town Alpha has 12 chunks", template.render("Alpha", 12));
+    }
+
+    @Test
+    public void fillsExplicitIndexesInAnyOrder() {
+        final MessageTemplate template = MessageTemplate.compile("'%2$s' in '%1$s', again '%2$s'");
+
+        assertEquals("'Bob' in 'Alpha', again 'Bob'", template.render("Alpha", "Bob"));
+    }
+
+    @Test
+    public void rendersPercentSignsAndLineSeparators() {
+        final MessageTemplate template = MessageTemplate.compile("100%% of %s%nDone");
+
+        assertEquals("100% of Alpha" + System.lineSeparator() + "Done", template.render("Alpha"));
+        assertEquals("50%", MessageTemplate.compile("50%%").render());
+    }
+
+    @Test
+    public void rendersLikeStringFormat() {
+        final String[] messages = {
+            "No placeholder",
+            "&cCannot find town '%1$s'",
+            "&cNo town owns chunk: '%1$s (%2$s,%3$s)'",
+            "%s and %s, %d%%",
+            "%3$s-%1$s-%2$s%n",
+        };
+        final Object[] args = {"world", -3, 42L};
+
+        for (String message : messages) {
+            final Object[] messageArgs = message.startsWith("%s") ? new Object[] {"a", "b", 7} : args;
+            assertEquals(message, String.format(message, messageArgs), MessageTemplate.compile(message).render(messageArgs));
+        }
+    }
+
+    @Test
+    public void keepsTheSpecifierOfAMissingArgument() {
+        final MessageTemplate template = MessageTemplate.compile("Player '%1$s' is not in '%2$s'");
+
+        assertEquals("Player 'Bob' is not in '%2$s'", template.render("Bob"));
+        assertEquals("Player '%1$s' is not in '%2$s'", template.render((Object[]) null));
+    }
+
+    @Test
+    public void rendersANonIntegerArgumentOfADecimalSlotAsText() {
+        assertEquals("count: many", MessageTemplate.compile("count: %d").render("many"));
+    }
+
+    @Test
+    public void keepsTheSourceMessage() {
+        assertEquals("Town %s", MessageTemplate.compile("Town %s").getSource());
+    }
+
+    @Test
+    public void rejectsUnsupportedSpecifiers() {
+        assertRejected("Unsupported format specifier '%f'", "Value %f");
+        assertRejected("Unsupported format specifier '%1$%'", "Value %1$%");
+        assertRejected("Unsupported format specifier '%1$n'", "Value %1$n");
+        assertRejected("Invalid argument index in '%0$'", "Value %0$s");
+        assertRejected("Incomplete format specifier at the end of the message", "Value %");
+        assertRejected("Incomplete format specifier at the end of the message", "Value %2$");
+    }
+
+    @Test
+    public void reportsInvalidAndMissingEntriesOnceWhenLoaded() throws IOException {
+        final File dataFolder = folder.newFolder("SimpleTowns");
+        final StringBuilder file = new StringBuilder();
+        for (LocalisationEntry entry : LocalisationEntry.values()) {
+            if (entry == LocalisationEntry.ERR_PERMISSION_DENIED) {
+                file.append(entry.getName()).append(": 'Denied %f'\n");
+            } else if (entry != LocalisationEntry.ERR_PLAYER_ONLY_COMMAND) {
+                file.append(entry.toString());
+            }
+        }
+        Files.write(new File(dataFolder, Localisation.DEFAULT_FILENAME).toPath(), file.toString().getBytes(StandardCharsets.UTF_8));
+
+        final List<String> warnings = new ArrayList<>();
+        final Localisation localisation = new Localisation(plugin(dataFolder, warnings));
+
+        assertEquals(LocalisationEntry.ERR_PERMISSION_DENIED.getDefaultValue(), localisation.get(LocalisationEntry.ERR_PERMISSION_DENIED));
+        assertEquals(LocalisationEntry.ERR_PLAYER_ONLY_COMMAND.getDefaultValue(), localisation.get(LocalisationEntry.ERR_PLAYER_ONLY_COMMAND));
+        assertEquals(4, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).contains("Error in localisation: 'MsgPermissionDenied': Unsupported format specifier '%f'"));
+        assertTrue(warnings.get(2), warnings.get(2).contains("Missing localisation: 'MsgPlayerOnlyCommand'"));
+
+        // Later uses don't report the entries again
+        localisation.get(LocalisationEntry.ERR_PERMISSION_DENIED);
+        localisation.get(LocalisationEntry.ERR_PLAYER_ONLY_COMMAND);
+        assertEquals(4, warnings.size());
+    }
+
+    /**
+     * Asserts that compiling a message fails with the passed error.
+     *
+     * @param expected  expected error message
+     * @param message   message to compile
+     */
+    private static void assertRejected(String expected, String message) {
+        try {
+            MessageTemplate.compile(message);
+            fail("Compiled '" + message + "'");
+        } catch (IllegalArgumentException ex) {
+            assertEquals(expected, ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns a plugin with a data folder and an empty config, whose logger
+     * adds the formatted warnings to a list.
+     *
+     * @param dataFolder    data folder of the plugin
+     * @param warnings      list to add the warnings to
+     * @return              plugin
+     */
+    private static Plugin plugin(final File dataFolder, final List<String> warnings) {
+        final Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                warnings.add(new SimpleFormatter().formatMessage(record));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        final YamlConfiguration config = new YamlConfiguration();
+        return (Plugin) Proxy.newProxyInstance(MessageTemplateTest.class.getClassLoader(), new Class<?>[] {Plugin.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getConfig":
+                        return config;
+                    case "getDataFolder":
+                        return dataFolder;
+                    case "getLogger":
+                        return logger;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,359 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.object.Town;
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the conversion of the chunks of a town to areas.
+ */
+public class ChunksToAreasTest {
+
+    private static final String[] WORLDS = {"world", "world_nether"};
+
+    @Test
+    public void matchesTheLegacyPairingWithoutPinchPoints() {
+        final Random random = new Random(20201017);
+        for (int set = 0; set < 500; set++) {
+            final int size = 2 + random.nextInt(14);
+            final List<TownChunk> chunks = new ArrayList<>();
+            for (int world = 0; world < 1 + random.nextInt(WORLDS.length); world++) {
+                chunks.addAll(randomChunks(random, WORLDS[world], size, 0.3 + random.nextDouble() * 0.6));
+            }
+            if (chunks.isEmpty()) {
+                continue;
+            }
+
+            final LegacyChunksToAreas legacy = new LegacyChunksToAreas("town", chunks);
+            final List<String> legacyRings = new ArrayList<>();
+            for (String areaName : legacy.areas.keySet()) {
+                final List<int[]> ring = new ArrayList<>();
+                for (LegacyChunksToAreas.Point point : legacy.areas.get(areaName)) {
+                    ring.add(new int[] {point.x, point.z});
+                }
+                legacyRings.add(legacy.areasWorld.get(areaName) + ":" + canonicalRing(ring));
+            }
+
+            // Legacy areas are outer boundaries and holes alike
+            final ChunksToAreas chunksToAreas = trace(chunks);
+            final List<String> rings = new ArrayList<>();
+            for (String areaName : chunksToAreas.areas.keySet()) {
+                final String world = WorldRegistry.getName(chunksToAreas.areasWorld.get(areaName));
+                rings.add(world + ":" + canonicalRing(points(chunksToAreas.areas.get(areaName))));
+                for (ArrayList<ChunksToAreas.Point> hole : chunksToAreas.areasHoles.get(areaName)) {
+                    rings.add(world + ":" + canonicalRing(points(hole)));
+                }
+            }
+
+            Collections.sort(legacyRings);
+            Collections.sort(rings);
+            assertEquals("Chunk set " + set + ": " + chunks, legacyRings, rings);
+        }
+    }
+
+    @Test
+    public void separatesChunksTouchingByACornerWhereTheLegacyPairingDependedOnOrder() {
+        // The same two chunks touching by a corner, at positions giving other hash orders
+        final Set<String> legacyShapes = new HashSet<>();
+        for (int x = -3; x <= 3; x++) {
+            for (int z = -3; z <= 3; z++) {
+                final List<TownChunk> chunks = new ArrayList<>();
+                chunks.add(new TownChunk(x, z, "world"));
+                chunks.add(new TownChunk(x + 1, z + 1, "world"));
+
+                final LegacyChunksToAreas legacy = new LegacyChunksToAreas("town", chunks);
+                final List<Integer> sizes = new ArrayList<>();
+                for (ArrayList<LegacyChunksToAreas.Point> area : legacy.areas.values()) {
+                    sizes.add(area.size());
+                }
+                Collections.sort(sizes);
+                legacyShapes.add(sizes.toString());
+
+                final ChunksToAreas chunksToAreas = trace(chunks);
+                assertEquals(2, chunksToAreas.areas.size());
+                for (String areaName : chunksToAreas.areas.keySet()) {
+                    assertEquals(4, chunksToAreas.areas.get(areaName).size());
+                    assertTrue(chunksToAreas.areasHoles.get(areaName).isEmpty());
+                }
+            }
+        }
+
+        // One figure eight, two squares, or a broken ring, depending on the position
+        assertTrue("Legacy shapes " + legacyShapes, legacyShapes.size() > 1);
+    }
+
+    @Test
+    public void tracesALongOneChunkWideTownWithoutRecursion() {
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < 100000; x++) {
+            chunks.add(new TownChunk(x, 0, "world"));
+        }
+
+        final ChunksToAreas chunksToAreas = trace(chunks);
+
+        assertEquals(1, chunksToAreas.areas.size());
+        final String areaName = chunksToAreas.areas.keySet().iterator().next();
+        assertEquals("(0,0)(1600000,0)(1600000,16)(0,16)", canonicalRing(points(chunksToAreas.areas.get(areaName))));
+        assertTrue(chunksToAreas.areasHoles.get(areaName).isEmpty());
+    }
+
+    @Test
+    public void keepsEnclavesAsHolesOfOneArea() {
+        // 5x5 square without the chunks (1,1) and (3,3)
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < 5; x++) {
+            for (int z = 0; z < 5; z++) {
+                if (!(x == 1 && z == 1) && !(x == 3 && z == 3)) {
+                    chunks.add(new TownChunk(x, z, "world"));
+                }
+            }
+        }
+
+        final ChunksToAreas chunksToAreas = trace(chunks);
+
+        assertEquals(1, chunksToAreas.areas.size());
+        final String areaName = chunksToAreas.areas.keySet().iterator().next();
+        assertEquals("(0,0)(80,0)(80,80)(0,80)", canonicalRing(points(chunksToAreas.areas.get(areaName))));
+        final List<String> holes = new ArrayList<>();
+        for (ArrayList<ChunksToAreas.Point> hole : chunksToAreas.areasHoles.get(areaName)) {
+            assertTrue(signedArea(points(hole)) < 0); // Run through the other way
+            holes.add(canonicalRing(points(hole)));
+        }
+        Collections.sort(holes);
+        assertEquals("[(16,16)(32,16)(32,32)(16,32), (48,48)(64,48)(64,64)(48,64)]", holes.toString());
+    }
+
+    @Test
+    public void tracesPinchPointsTheSameWhateverTheOrderOfTheChunks() {
+        // Checkerboard, with an L of three chunks touching it by corners
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < 4; x++) {
+            for (int z = 0; z < 4; z++) {
+                if ((x + z) % 2 == 0) {
+                    chunks.add(new TownChunk(x, z, "world"));
+                }
+            }
+        }
+        chunks.add(new TownChunk(4, 4, "world"));
+        chunks.add(new TownChunk(5, 4, "world"));
+        chunks.add(new TownChunk(5, 3, "world"));
+
+        final String expected = describe(trace(chunks));
+        final Random random = new Random(6);
+        for (int order = 0; order < 50; order++) {
+            Collections.shuffle(chunks, random);
+            assertEquals(expected, describe(trace(chunks)));
+        }
+
+        final ChunksToAreas chunksToAreas = trace(chunks);
+        assertEquals(9, chunksToAreas.areas.size()); // 8 squares and the L
+        for (String areaName : chunksToAreas.areas.keySet()) {
+            assertTrue(chunksToAreas.areasHoles.get(areaName).isEmpty());
+        }
+    }
+
+    @Test
+    public void keepsTurningAroundTheSameChunkWhereAnAreaTouchesItself() {
+        // Ring around (1,1), closed only by the corner between (0,1) and (1,2)
+        final List<TownChunk> chunks = new ArrayList<>();
+        final int[][] coordinates = {{0, 0}, {1, 0}, {2, 0}, {2, 1}, {2, 2}, {1, 2}, {0, 1}};
+        for (int[] chunk : coordinates) {
+            chunks.add(new TownChunk(chunk[0], chunk[1], "world"));
+        }
+
+        final Random random = new Random(6);
+        for (int order = 0; order < 20; order++) {
+            Collections.shuffle(chunks, random);
+            final ChunksToAreas chunksToAreas = trace(chunks);
+            assertEquals(1, chunksToAreas.areas.size());
+            final String areaName = chunksToAreas.areas.keySet().iterator().next();
+
+            // One boundary, through the corner twice, the enclave isn't a hole
+            assertEquals("(0,0)(48,0)(48,48)(16,48)(16,32)(32,32)(32,16)(16,16)(16,32)(0,32)",
+                    canonicalRing(points(chunksToAreas.areas.get(areaName))));
+            assertTrue(chunksToAreas.areasHoles.get(areaName).isEmpty());
+        }
+    }
+
+    @Test
+    public void bridgesTheHolesOfAPolygon() {
+        // 5x5 square without the chunks (1,1) and (3,2)
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < 5; x++) {
+            for (int z = 0; z < 5; z++) {
+                if (!(x == 1 && z == 1) && !(x == 3 && z == 2)) {
+                    chunks.add(new TownChunk(x, z, "world"));
+                }
+            }
+        }
+
+        final ChunksToAreas chunksToAreas = trace(chunks);
+        final String areaName = chunksToAreas.areas.keySet().iterator().next();
+        final List<int[]> polygon = points(chunksToAreas.getPolygon(areaName));
+
+        // The bridges have no width, the polygon covers the 23 chunks only
+        assertEquals(2 * 23 * 16 * 16, signedArea(polygon));
+        final Set<String> points = new HashSet<>();
+        for (int[] point : polygon) {
+            points.add(point[0] + "," + point[1]);
+        }
+        for (ArrayList<ChunksToAreas.Point> ring : chunksToAreas.areasHoles.get(areaName)) {
+            for (ChunksToAreas.Point point : ring) {
+                assertTrue(points.contains(point.x + "," + point.z));
+            }
+        }
+
+        // Without holes, the polygon is the outer boundary
+        final List<TownChunk> square = new ArrayList<>();
+        square.add(new TownChunk(0, 0, "world"));
+        final ChunksToAreas squareAreas = trace(square);
+        final String squareName = squareAreas.areas.keySet().iterator().next();
+        assertEquals(squareAreas.areas.get(squareName), squareAreas.getPolygon(squareName));
+    }
+
+    /**
+     * Returns the areas of a town owning chunks, in active worlds.
+     *
+     * @param chunks    chunks of the town
+     * @return          areas of the town
+     */
+    static ChunksToAreas trace(List<TownChunk> chunks) {
+        final Town town = new Town("town", new HashSet<UUID>(), new HashSet<UUID>());
+        final Set<Integer> worlds = new HashSet<>();
+        for (TownChunk chunk : chunks) {
+            town.addChunk(chunk);
+            worlds.add(chunk.getWorldId());
+        }
+        for (int world : worlds) {
+            town.getChunksToAreas().activateWorld(world);
+        }
+        return town.getChunksToAreas();
+    }
+
+    /**
+     * Returns random chunks in a square, with chunks added where two chunks
+     * touch only by a corner.
+     *
+     * @param random        random numbers
+     * @param worldname     world of the chunks
+     * @param size          side of the square, in chunks
+     * @param density       probability of each chunk to be claimed
+     * @return              chunks
+     */
+    private static List<TownChunk> randomChunks(Random random, String worldname, int size, double density) {
+        final boolean[][] claimed = new boolean[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                claimed[x][z] = random.nextDouble() < density;
+            }
+        }
+
+        boolean pinched = true;
+        while (pinched) {
+            pinched = false;
+            for (int x = 0; x + 1 < size; x++) {
+                for (int z = 0; z + 1 < size; z++) {
+                    if (claimed[x][z] && claimed[x + 1][z + 1] && !claimed[x + 1][z] && !claimed[x][z + 1]) {
+                        claimed[x + 1][z] = pinched = true;
+                    } else if (claimed[x + 1][z] && claimed[x][z + 1] && !claimed[x][z] && !claimed[x + 1][z + 1]) {
+                        claimed[x][z] = pinched = true;
+                    }
+                }
+            }
+        }
+
+        final int offsetX = random.nextInt(200) - 100;
+        final int offsetZ = random.nextInt(200) - 100;
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                if (claimed[x][z]) {
+                    chunks.add(new TownChunk(offsetX + x, offsetZ + z, worldname));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    static List<int[]> points(List<ChunksToAreas.Point> ring) {
+        final List<int[]> points = new ArrayList<>();
+        for (ChunksToAreas.Point point : ring) {
+            points.add(new int[] {point.x, point.z});
+        }
+        return points;
+    }
+
+    /**
+     * Returns the areas as a string, with the points in their order.
+     *
+     * @param chunksToAreas     areas of a town
+     * @return                  string of the areas
+     */
+    private static String describe(ChunksToAreas chunksToAreas) {
+        final List<String> areaNames = new ArrayList<>(chunksToAreas.areas.keySet());
+        Collections.sort(areaNames);
+        final StringBuilder string = new StringBuilder();
+        for (String areaName : areaNames) {
+            string.append(areaName).append(':');
+            for (ChunksToAreas.Point point : chunksToAreas.areas.get(areaName)) {
+                string.append('(').append(point.x).append(',').append(point.z).append(')');
+            }
+            string.append(chunksToAreas.areasHoles.get(areaName).size()).append('\n');
+        }
+        return string.toString();
+    }
+
+    /**
+     * Returns twice the signed area of a ring.
+     *
+     * @param ring      points of the ring, as {x, z}
+     * @return          positive for a counterclockwise ring
+     */
+    static long signedArea(List<int[]> ring) {
+        long area = 0;
+        for (int i = 0; i < ring.size(); i++) {
+            final int[] current = ring.get(i);
+            final int[] next = ring.get((i + 1) % ring.size());
+            area += (long) current[0] * next[1] - (long) next[0] * current[1];
+        }
+        return area;
+    }
+
+    /**
+     * Returns a ring as a string independent of its first point and of its
+     * direction: counterclockwise, from its lowest point.
+     *
+     * @param ring      points of the ring, as {x, z}
+     * @return          canonical string of the ring
+     */
+    static String canonicalRing(List<int[]> ring) {
+        final List<int[]> points = new ArrayList<>(ring);
+        if (signedArea(points) < 0) {
+            Collections.reverse(points);
+        }
+
+        int first = 0;
+        for (int i = 1; i < points.size(); i++) {
+            final int[] point = points.get(i);
+            if (point[0] < points.get(first)[0] || point[0] == points.get(first)[0] && point[1] < points.get(first)[1]) {
+                first = i;
+            }
+        }
+        final StringBuilder string = new StringBuilder();
+        for (int i = 0; i < points.size(); i++) {
+            final int[] point = points.get((first + i) % points.size());
+            string.append('(').append(point[0]).append(',').append(point[1]).append(')');
+        }
+        return string.toString();
+    }
+}
@@ -0,0 +1,180 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Offline benchmark of the two WorldGuard region layouts on synthetic towns
+ * of real size: region counts, and the cost of the containment checks
+ * WorldGuard makes for each candidate region of a query, a bounding box then
+ * a crossing test for a polygon, a bounding box for a cuboid.
+ * The cuboids of an area are all checked, while the WorldGuard index only
+ * returns those whose box contains the point, so the cuboid time is an upper
+ * bound.
+ * Not a test, run it with the test classpath:
+ * java com.gmail.jameshealey1994.simpletowns.utils.RegionLayoutBenchmark
+ */
+public final class RegionLayoutBenchmark {
+
+    private static final int TOWNS = 200;
+    private static final int QUERIES = 2000000;
+    private static final int ROUNDS = 5;
+
+    /**
+     * Sink for the query results, so that they aren't optimised away.
+     */
+    private static int sink;
+
+    private RegionLayoutBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        final Random random = new Random(1994);
+        final List<int[]> polygons = new ArrayList<>();
+        final List<int[]> rectangles = new ArrayList<>();
+        int chunkCount = 0;
+        int polygonPoints = 0;
+        for (int town = 0; town < TOWNS; town++) {
+            final List<TownChunk> chunks = RegionRectanglesTest.growTown(random, 20 + random.nextInt(1500));
+            final ChunksToAreas chunksToAreas = ChunksToAreasTest.trace(chunks);
+            chunkCount += chunks.size();
+            for (String areaName : chunksToAreas.areas.keySet()) {
+                final List<ChunksToAreas.Point> polygon = chunksToAreas.getPolygon(areaName);
+                polygonPoints += polygon.size();
+                polygons.add(flatten(polygon));
+
+                final List<ChunksToAreas.Rectangle> areaRectangles = chunksToAreas.getRectangles(areaName);
+                final int[] blocks = new int[areaRectangles.size() * 4];
+                for (int i = 0; i < areaRectangles.size(); i++) {
+                    final ChunksToAreas.Rectangle rectangle = areaRectangles.get(i);
+                    blocks[i * 4] = rectangle.minX * 16;
+                    blocks[i * 4 + 1] = rectangle.minZ * 16;
+                    blocks[i * 4 + 2] = rectangle.maxX * 16 + 15;
+                    blocks[i * 4 + 3] = rectangle.maxZ * 16 + 15;
+                }
+                rectangles.add(blocks);
+            }
+        }
+
+        int rectangleCount = 0;
+        for (int[] blocks : rectangles) {
+            rectangleCount += blocks.length / 4;
+        }
+        System.out.printf("%d towns, %d chunks%n", TOWNS, chunkCount);
+        System.out.printf("Polygons: %d regions, %d points%n", polygons.size(), polygonPoints);
+        System.out.printf("Rectangles: %d regions, %.1f per area%n", rectangleCount, (double) rectangleCount / polygons.size());
+
+        // Points around the origin, where every town was grown
+        final int[] queries = new int[QUERIES * 2];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(40 * 16) - 20 * 16;
+        }
+
+        long polygonTime = 0;
+        long rectangleTime = 0;
+        for (int round = 0; round < ROUNDS + 2; round++) {
+            final long polygonStart = System.nanoTime();
+            queryPolygons(polygons, queries);
+            final long rectangleStart = System.nanoTime();
+            queryRectangles(rectangles, queries);
+            final long end = System.nanoTime();
+            if (round >= 2) { // The first rounds warm up
+                polygonTime += rectangleStart - polygonStart;
+                rectangleTime += end - rectangleStart;
+            }
+        }
+        final double checks = (double) ROUNDS * QUERIES;
+        System.out.printf("Polygon check: %.1f ns/area%n", polygonTime / checks);
+        System.out.printf("Cuboid checks: %.1f ns/area (sink %d)%n", rectangleTime / checks, sink);
+    }
+
+    /**
+     * Checks each query point against one polygon, in turn.
+     *
+     * @param polygons      polygons as x, z pairs
+     * @param queries       query points as x, z pairs
+     */
+    private static void queryPolygons(List<int[]> polygons, int[] queries) {
+        for (int i = 0; i < QUERIES; i++) {
+            if (polygonContains(polygons.get(i % polygons.size()), queries[i * 2], queries[i * 2 + 1])) {
+                sink++;
+            }
+        }
+    }
+
+    /**
+     * Checks each query point against the cuboids of one area, in turn.
+     *
+     * @param rectangles    cuboids of each area as minX, minZ, maxX, maxZ
+     * @param queries       query points as x, z pairs
+     */
+    private static void queryRectangles(List<int[]> rectangles, int[] queries) {
+        for (int i = 0; i < QUERIES; i++) {
+            final int[] blocks = rectangles.get(i % rectangles.size());
+            final int x = queries[i * 2];
+            final int z = queries[i * 2 + 1];
+            for (int j = 0; j < blocks.length; j += 4) {
+                if (x >= blocks[j] && z >= blocks[j + 1] && x <= blocks[j + 2] && z <= blocks[j + 3]) {
+                    sink++;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounding box then crossing test, as ProtectedPolygonalRegion does.
+     *
+     * @param polygon   polygon as x, z pairs, followed by its bounding box
+     * @param x         x of the point
+     * @param z         z of the point
+     * @return          whether the point is inside the polygon
+     */
+    private static boolean polygonContains(int[] polygon, int x, int z) {
+        final int box = polygon.length - 4;
+        if (x < polygon[box] || z < polygon[box + 1] || x > polygon[box + 2] || z > polygon[box + 3]) {
+            return false;
+        }
+        boolean inside = false;
+        for (int i = 0, j = box - 2; i < box; j = i, i += 2) {
+            final int xi = polygon[i];
+            final int zi = polygon[i + 1];
+            final int xj = polygon[j];
+            final int zj = polygon[j + 1];
+            if ((zi > z) != (zj > z) && x < (long) (xj - xi) * (z - zi) / (double) (zj - zi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns a polygon as x, z pairs, followed by its bounding box.
+     *
+     * @param polygon   polygon
+     * @return          flattened polygon
+     */
+    private static int[] flatten(List<ChunksToAreas.Point> polygon) {
+        final int[] flat = new int[polygon.size() * 2 + 4];
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < polygon.size(); i++) {
+            final ChunksToAreas.Point point = polygon.get(i);
+            flat[i * 2] = point.x;
+            flat[i * 2 + 1] = point.z;
+            minX = Math.min(minX, point.x);
+            minZ = Math.min(minZ, point.z);
+            maxX = Math.max(maxX, point.x);
+            maxZ = Math.max(maxZ, point.z);
+        }
+        flat[flat.length - 4] = minX;
+        flat[flat.length - 3] = minZ;
+        flat[flat.length - 2] = maxX;
+        flat[flat.length - 1] = maxZ;
+        return flat;
+    }
+}
@@ -0,0 +1,206 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import com.gmail.jameshealey1994.simpletowns.object.TownChunk;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the rectangles of the "Rectangles" WorldGuard region layout against
+ * the areas they replace.
+ */
+public class RegionRectanglesTest {
+
+    @Test
+    public void coversTheChunksOfEachAreaExactlyOnce() {
+        final Random random = new Random(20201018);
+        for (int set = 0; set < 300; set++) {
+            final List<TownChunk> chunks = new ArrayList<>();
+            final int size = 2 + random.nextInt(20);
+            final double density = 0.2 + random.nextDouble() * 0.8;
+            for (int x = 0; x < size; x++) {
+                for (int z = 0; z < size; z++) {
+                    if (random.nextDouble() < density) {
+                        chunks.add(new TownChunk(x - 10, z - 10, "world"));
+                    }
+                }
+            }
+            if (!chunks.isEmpty()) {
+                assertCovered("Chunk set " + set, chunks);
+            }
+        }
+    }
+
+    @Test
+    public void coversAreasWithHolesAndPinchPoints() {
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = 0; x < 9; x++) {
+            for (int z = 0; z < 9; z++) {
+                final boolean hole = x >= 2 && x <= 3 && z >= 2 && z <= 6 || x == 6 && z == 6;
+                if (!hole) {
+                    chunks.add(new TownChunk(x, z, "world"));
+                }
+            }
+        }
+        chunks.add(new TownChunk(9, 9, "world")); // Touches the square by a corner
+        chunks.add(new TownChunk(10, 10, "world"));
+
+        assertCovered("Square with holes", chunks);
+    }
+
+    @Test
+    public void needsFewRectanglesForTownsOfRealSize() {
+        final Random random = new Random(1994);
+        int chunkCount = 0;
+        int areaCount = 0;
+        int polygonPoints = 0;
+        int rectangleCount = 0;
+        for (int town = 0; town < 200; town++) {
+            final List<TownChunk> chunks = growTown(random, 20 + random.nextInt(1500));
+            final ChunksToAreas chunksToAreas = ChunksToAreasTest.trace(chunks);
+            chunkCount += chunks.size();
+            for (String areaName : chunksToAreas.areas.keySet()) {
+                areaCount++;
+                polygonPoints += chunksToAreas.getPolygon(areaName).size();
+                rectangleCount += chunksToAreas.getRectangles(areaName).size();
+            }
+        }
+
+        // One cuboid per chunk would make the layout pointless, and the
+        // greedy growth shouldn't need many more cuboids than polygon edges
+        assertTrue(rectangleCount + " rectangles for " + chunkCount + " chunks", rectangleCount * 4 < chunkCount);
+        assertTrue(rectangleCount + " rectangles for " + polygonPoints + " polygon points", rectangleCount <= polygonPoints);
+        assertTrue(rectangleCount + " rectangles for " + areaCount + " polygons", rectangleCount > areaCount);
+    }
+
+    @Test
+    public void needsFewRectanglesForADisc() {
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (int x = -35; x <= 35; x++) {
+            for (int z = -35; z <= 35; z++) {
+                if (x * x + z * z <= 35 * 35) {
+                    chunks.add(new TownChunk(x, z, "world"));
+                }
+            }
+        }
+        final ChunksToAreas chunksToAreas = ChunksToAreasTest.trace(chunks);
+        final String areaName = chunksToAreas.areas.keySet().iterator().next();
+
+        assertEquals(3853, chunks.size());
+        assertEquals(1, chunksToAreas.areas.size());
+        assertEquals(43, chunksToAreas.getRectangles(areaName).size());
+        assertCovered("Disc", chunks);
+    }
+
+    /**
+     * Asserts that the rectangles of each area cover the chunks inside the
+     * area, each exactly once, and no other chunk.
+     *
+     * @param description   description of the chunks, for failures
+     * @param chunks        chunks of a town
+     */
+    private static void assertCovered(String description, List<TownChunk> chunks) {
+        final ChunksToAreas chunksToAreas = ChunksToAreasTest.trace(chunks);
+        final Set<String> claimed = new HashSet<>();
+        for (TownChunk chunk : chunks) {
+            claimed.add(chunk.getX() + "," + chunk.getZ());
+        }
+
+        final Map<String, String> chunkAreas = new HashMap<>();
+        for (String areaName : chunksToAreas.areas.keySet()) {
+            final Set<String> covered = new HashSet<>();
+            for (ChunksToAreas.Rectangle rectangle : chunksToAreas.getRectangles(areaName)) {
+                assertTrue(description + ": empty rectangle", rectangle.minX <= rectangle.maxX && rectangle.minZ <= rectangle.maxZ);
+                for (int x = rectangle.minX; x <= rectangle.maxX; x++) {
+                    for (int z = rectangle.minZ; z <= rectangle.maxZ; z++) {
+                        final String chunk = x + "," + z;
+                        assertTrue(description + ": " + chunk + " covered twice in " + areaName, covered.add(chunk));
+                        assertTrue(description + ": " + chunk + " isn't claimed", claimed.contains(chunk));
+                        assertTrue(description + ": " + chunk + " is outside " + areaName, contains(chunksToAreas, areaName, x, z));
+                        final String other = chunkAreas.put(chunk, areaName);
+                        assertTrue(description + ": " + chunk + " in " + other + " and " + areaName, other == null);
+                    }
+                }
+            }
+        }
+        assertEquals(description, claimed, chunkAreas.keySet());
+    }
+
+    /**
+     * Returns whether the centre of a chunk is inside an area, holes
+     * excluded.
+     *
+     * @param chunksToAreas     areas of a town
+     * @param areaName          name of the area
+     * @param x                 x of the chunk
+     * @param z                 z of the chunk
+     * @return                  whether the chunk is inside the area
+     */
+    private static boolean contains(ChunksToAreas chunksToAreas, String areaName, int x, int z) {
+        boolean inside = contains(chunksToAreas.areas.get(areaName), x * 16 + 8, z * 16 + 8);
+        for (ArrayList<ChunksToAreas.Point> hole : chunksToAreas.areasHoles.get(areaName)) {
+            inside &= !contains(hole, x * 16 + 8, z * 16 + 8);
+        }
+        return inside;
+    }
+
+    /**
+     * Even-odd test of a point against a ring. The point is never on an edge,
+     * its coordinates are in the middle of a chunk.
+     *
+     * @param ring      ring of block coordinates
+     * @param x         x of the point
+     * @param z         z of the point
+     * @return          whether the point is inside the ring
+     */
+    static boolean contains(List<ChunksToAreas.Point> ring, int x, int z) {
+        boolean inside = false;
+        for (int i = 0, j = ring.size() - 1; i < ring.size(); j = i++) {
+            final ChunksToAreas.Point a = ring.get(i);
+            final ChunksToAreas.Point b = ring.get(j);
+            if ((a.z > z) != (b.z > z) && x < (long) (b.x - a.x) * (z - a.z) / (double) (b.z - a.z) + a.x) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns the chunks of a town grown from one chunk by claiming random
+     * neighbours, as towns grow, which gives irregular borders, enclaves and
+     * parts touching by a corner.
+     *
+     * @param random    random numbers
+     * @param size      number of chunks to claim
+     * @return          chunks of the town
+     */
+    static List<TownChunk> growTown(Random random, int size) {
+        final List<long[]> claimed = new ArrayList<>();
+        final Set<Long> claimedSet = new HashSet<>();
+        claimed.add(new long[] {0, 0});
+        claimedSet.add(0L);
+        while (claimed.size() < size) {
+            final long[] from = claimed.get(random.nextInt(claimed.size()));
+            final int direction = random.nextInt(4);
+            final long x = from[0] + (direction == 0 ? 1 : direction == 1 ? -1 : 0);
+            final long z = from[1] + (direction == 2 ? 1 : direction == 3 ? -1 : 0);
+            if (claimedSet.add(x << 32 ^ (z & 0xFFFFFFFFL))) {
+                claimed.add(new long[] {x, z});
+            }
+        }
+
+        final List<TownChunk> chunks = new ArrayList<>();
+        for (long[] chunk : claimed) {
+            chunks.add(new TownChunk((int) chunk[0], (int) chunk[1], "world"));
+        }
+        return chunks;
+    }
+}
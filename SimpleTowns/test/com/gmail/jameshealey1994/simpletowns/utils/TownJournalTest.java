@@ -0,0 +1,223 @@
+package com.gmail.jameshealey1994.simpletowns.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.bukkit.Server;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests the recovery of the towns from the config and the journal file,
+ * as left by a crash.
+ */
+public class TownJournalTest {
+
+    private static final String LEADER = "00000000-0000-0000-0000-000000000001";
+    private static final String CITIZEN = "00000000-0000-0000-0000-000000000002";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dataFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFolder = folder.newFolder("SimpleTowns");
+    }
+
+    @Test
+    public void replaysOnlyTheRecordsAfterTheConfig() throws IOException {
+        final YamlConfiguration config = journalConfig();
+        config.set("Towns.Alpha.Leaders", Collections.singletonList(LEADER));
+        config.set("Towns.Alpha.Citizens", Collections.singletonList(CITIZEN));
+        config.set("Towns.Alpha.Chunks.world", Collections.singletonList("0,0"));
+        config.set("Journal.Sequence", 2);
+        writeJournal("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n"
+                + "2\tADD\tAlpha\t" + CITIZEN + "\n"
+                + "3\tCLAIM\tAlpha\tworld\t1,0\n"
+                + "4\tPROMOTE\tAlpha\t" + CITIZEN + "\n");
+
+        openJournal(config);
+
+        assertEquals(Arrays.asList(LEADER, CITIZEN), config.getStringList("Towns.Alpha.Leaders"));
+        assertEquals(Collections.emptyList(), config.getStringList("Towns.Alpha.Citizens"));
+        assertEquals(Arrays.asList("0,0", "1,0"), config.getStringList("Towns.Alpha.Chunks.world"));
+        assertEquals(4, config.getLong("Journal.Sequence", 0));
+        assertEquals("3\tCLAIM\tAlpha\tworld\t1,0\n"
+                + "4\tPROMOTE\tAlpha\t" + CITIZEN + "\n", readJournal());
+    }
+
+    @Test
+    public void dropsAnIncompleteLastRecord() throws IOException {
+        final YamlConfiguration config = journalConfig();
+        writeJournal("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n"
+                + "2\tCLAIM\tAlpha\twor");
+
+        final TownJournal journal = openJournal(config);
+
+        assertEquals(Collections.singletonList("0,0"), config.getStringList("Towns.Alpha.Chunks.world"));
+        assertEquals(1, config.getLong("Journal.Sequence", 0));
+        assertEquals("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n", readJournal());
+
+        // The next record takes the number of the dropped one
+        journal.claimChunk("Alpha", "world", "2,0");
+        assertEquals("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n"
+                + "2\tCLAIM\tAlpha\tworld\t2,0\n", readJournal());
+    }
+
+    @Test
+    public void stopsAtAnInvalidRecord() throws IOException {
+        final YamlConfiguration config = journalConfig();
+        writeJournal("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n"
+                + "x\tCLAIM\tAlpha\tworld\t1,0\n"
+                + "3\tCLAIM\tAlpha\tworld\t2,0\n");
+
+        openJournal(config);
+
+        assertEquals(Collections.singletonList("0,0"), config.getStringList("Towns.Alpha.Chunks.world"));
+        assertEquals(1, config.getLong("Journal.Sequence", 0));
+    }
+
+    @Test
+    public void recoversFromTheLastSnapshotAndTheRecordsAfterIt() throws IOException {
+        final YamlConfiguration config = journalConfig();
+        config.set("Journal.Snapshot Interval", 3);
+        final TownJournal journal = openJournal(config);
+
+        journal.createTown("Alpha", UUID.fromString(LEADER), "world", "0,0");
+        journal.claimChunk("Alpha", "world", "1,0");
+        journal.claimChunk("Alpha", "world", "2,0"); // Snapshot, the journal is truncated
+        assertEquals("", readJournal());
+
+        journal.claimChunk("Alpha", "world", "3,0");
+        journal.renameTown("Alpha", "Beta");
+        assertEquals("4\tCLAIM\tAlpha\tworld\t3,0\n"
+                + "5\tRENAME\tAlpha\tBeta\n", readJournal());
+
+        // Crash, the journal isn't closed: start again from the files
+        final YamlConfiguration snapshot = YamlConfiguration.loadConfiguration(new File(dataFolder, "config.yml"));
+        assertEquals(3, snapshot.getLong("Journal.Sequence", 0));
+        openJournal(snapshot);
+
+        assertFalse(snapshot.contains("Towns.Alpha"));
+        assertEquals(Collections.singletonList(LEADER), snapshot.getStringList("Towns.Beta.Leaders"));
+        assertEquals(Arrays.asList("0,0", "1,0", "2,0", "3,0"), snapshot.getStringList("Towns.Beta.Chunks.world"));
+        assertEquals(5, snapshot.getLong("Journal.Sequence", 0));
+    }
+
+    @Test
+    public void keepsTheRecordsInTheConfigOnceDisabled() throws IOException {
+        final YamlConfiguration config = new YamlConfiguration();
+        writeJournal("1\tCREATE\tAlpha\t" + LEADER + "\tworld\t0,0\n");
+
+        openJournal(config);
+
+        assertFalse(new File(dataFolder, "towns.journal").exists());
+        final YamlConfiguration saved = YamlConfiguration.loadConfiguration(new File(dataFolder, "config.yml"));
+        assertEquals(Collections.singletonList("0,0"), saved.getStringList("Towns.Alpha.Chunks.world"));
+        assertEquals(1, saved.getLong("Journal.Sequence", 0));
+    }
+
+    /**
+     * Returns a config with the journal enabled.
+     *
+     * @return      config
+     */
+    private static YamlConfiguration journalConfig() {
+        final YamlConfiguration config = new YamlConfiguration();
+        config.set("Journal.Enabled", true);
+        return config;
+    }
+
+    /**
+     * Opens a journal on a config, replaying the journal file.
+     *
+     * @param config    config of the plugin
+     * @return          opened journal
+     */
+    private TownJournal openJournal(FileConfiguration config) {
+        final Plugin plugin = plugin(config);
+        final TownJournal journal = new TownJournal(plugin, new ConfigSaver(plugin));
+        journal.open();
+        return journal;
+    }
+
+    private void writeJournal(String content) throws IOException {
+        Files.write(new File(dataFolder, "towns.journal").toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String readJournal() throws IOException {
+        return new String(Files.readAllBytes(new File(dataFolder, "towns.journal").toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a plugin with a config and the data folder of the test, whose
+     * scheduler runs every task at once on the calling thread.
+     *
+     * @param config    config of the plugin
+     * @return          plugin
+     */
+    private Plugin plugin(final FileConfiguration config) {
+        final Logger logger = Logger.getLogger(TownJournalTest.class.getName());
+        final BukkitScheduler scheduler = proxy(BukkitScheduler.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (args != null) {
+                    for (Object arg : args) {
+                        if (arg instanceof Runnable) {
+                            ((Runnable) arg).run();
+                        }
+                    }
+                }
+                return null;
+            }
+        });
+        final Server server = proxy(Server.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return "getScheduler".equals(method.getName()) ? scheduler : null;
+            }
+        });
+        return proxy(Plugin.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                switch (method.getName()) {
+                    case "getConfig":
+                        return config;
+                    case "getDataFolder":
+                        return dataFolder;
+                    case "getLogger":
+                        return logger;
+                    case "getServer":
+                        return server;
+                    case "isEnabled":
+                        return true;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(TownJournalTest.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+}